@@ -17,6 +17,7 @@
 plugins {
   id("plugin-conventions")
   kotlin("jvm") version embeddedKotlinVersion
+  alias(libs.plugins.jmh)
 }
 
 @Suppress("UnstableApiUsage")
@@ -120,3 +121,10 @@ testing {
     }
   }
 }
+
+// ./gradlew jmh
+jmh {
+  fork.set(1)
+  warmupIterations.set(3)
+  iterations.set(5)
+}
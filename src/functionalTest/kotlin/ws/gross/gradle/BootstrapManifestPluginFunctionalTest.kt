@@ -47,6 +47,77 @@ class BootstrapManifestPluginFunctionalTest {
     }
   }
 
+  @Test
+  fun `plugin modules recorded`() {
+    projectDir.resolve("build.gradle.kts").appendText("""
+      manifest {
+        bootstrapManifest {
+          plugin("other.plugin", "other.group:other-plugin")
+        }
+      }
+
+    """.trimIndent())
+
+    val result = createRunner().build()
+
+    assertThat(result)
+      .task(":generateBootstrapManifest")
+      .isSuccess()
+
+    assertThat(manifest).all {
+      exists()
+      text().asProperties().all {
+        key("pluginIds").isEqualTo("other.plugin,some.plugin")
+        key("pluginModules").isEqualTo("other.plugin=other.group:other-plugin")
+      }
+    }
+  }
+
+  @Test
+  fun `inline catalog embedded`() {
+    projectDir.resolve("libs.versions.toml").writeText("""
+      [libraries]
+      guava = "com.google.guava:guava:31.0.1-jre"
+    """.trimIndent())
+
+    projectDir.resolve("build.gradle.kts").appendText("""
+      manifest {
+        inlineCatalog("catAlias", file("libs.versions.toml"))
+      }
+
+    """.trimIndent())
+
+    val result = createRunner().build()
+
+    assertThat(result)
+      .task(":generateBootstrapManifest")
+      .isSuccess()
+
+    assertThat(manifest).all {
+      exists()
+      text().asProperties().all {
+        key("catalogIds").isEqualTo("catAlias=some.group:module")
+        key("catalogContent.catAlias").contains("guava = \"com.google.guava:guava:31.0.1-jre\"")
+      }
+    }
+  }
+
+  @Test
+  fun `inline catalog requires declared catalog`() {
+    projectDir.resolve("libs.versions.toml").writeText("")
+
+    projectDir.resolve("build.gradle.kts").appendText("""
+      manifest {
+        inlineCatalog("unknown", file("libs.versions.toml"))
+      }
+
+    """.trimIndent())
+
+    val result = createRunner().buildAndFail()
+
+    assertThat(result).output().any { it.contains("Inline catalog unknown should be declared") }
+  }
+
   @Test
   fun `caches result`() {
     val first = createRunner().build()
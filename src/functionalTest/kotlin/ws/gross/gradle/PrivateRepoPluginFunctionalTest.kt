@@ -92,6 +92,73 @@ class PrivateRepoPluginFunctionalTest {
       }
     }
 
+    @Test
+    fun `routed plugin repos`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusPluginRouting = true
+      """.trimIndent())
+      projectDir.resolve(".gradle/private-repo").mkdirs()
+      projectDir.resolve(".gradle/private-repo/manifest-plugin-ids.txt").writeText("org.example.dummy\n")
+
+      val result = createRunner().build()
+
+      assertThat(parsePluginRepos(result.output)).all {
+        hasSize(3)
+        index(0).gradlePluginPortal().all {
+          excludeMatchers().groupRegexes("com\\.example(\\..*)?")
+          excludeMatchers().groups("org.example.dummy")
+        }
+        index(1).mavenCentral().all {
+          excludeMatchers().groupRegexes("com\\.example(\\..*)?")
+          excludeMatchers().groups("org.example.dummy")
+        }
+        index(2).nexus().excludeMatchers().isEmpty()
+      }
+    }
+
+    @Test
+    fun `mirror mode`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusMirror = true
+      """.trimIndent())
+
+      val result = createRunner().build()
+
+      assertThat(parsePluginRepos(result.output)).all {
+        hasSize(3)
+        index(0).nexus()
+        index(1).repo("nexusMavenCentral", "https://nexus.example.com/repository/maven-central")
+        index(2).repo("nexusGradlePluginPortal", "https://nexus.example.com/repository/gradle-plugins")
+      }
+
+      assertThat(parseDependencyRepos(result.output)).all {
+        hasSize(2)
+        index(0).nexus().excludeMatchers().isEmpty()
+        index(1).repo("nexusMavenCentral", "https://nexus.example.com/repository/maven-central")
+          .excludeMatchers().groupRegexes("com\\.example(\\..*)?")
+      }
+    }
+
+    @Test
+    fun `mirror mode with upstreams proxied by group repo`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusMirror = true
+      nexusMavenCentralMirror =
+      nexusGradlePluginPortalMirror =
+      """.trimIndent())
+
+      val result = createRunner().build()
+
+      assertThat(parsePluginRepos(result.output)).all {
+        hasSize(1)
+        index(0).nexus()
+      }
+      assertThat(parseDependencyRepos(result.output)).all {
+        hasSize(1)
+        index(0).nexus()
+      }
+    }
+
     @Test
     fun `without default regexes`() {
       projectDir.resolve("gradle.properties").appendText("""
@@ -137,6 +204,237 @@ class PrivateRepoPluginFunctionalTest {
         index(1).excludeMatchers().isEmpty()
       }
     }
+
+    @Test
+    fun `with compiled group filter`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusGroups = org.example, org.example.gradle, dev.example.*
+      nexusGroupFilterThreshold = 2
+      """.trimIndent())
+
+      val result = createRunner().build()
+
+      assertThat(parseDependencyRepos(result.output)).dependencyRepos {
+        each { it.includeMatchers().isEmpty() }
+        index(0).excludeMatchers()
+          .groupRegexes("(?:(?:dev\\.example(?:\\..*)?|org\\.example(?:\\.gradle)?))|(?:com\\.example(\\..*)?)")
+        index(1).excludeMatchers().isEmpty()
+      }
+    }
+
+    @Test
+    fun `learned routing`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusLearnRouting = true
+      """.trimIndent())
+      projectDir.resolve(".gradle/private-repo").mkdirs()
+      val now = System.currentTimeMillis()
+      projectDir.resolve(".gradle/private-repo/routing.properties").writeText("""
+        org.acme\:lib=nexus@$now
+        org.acme\:expired=nexus@0
+        org.mixed\:lib=MavenRepo,nexus@$now
+        org.legacy=nexus
+      """.trimIndent())
+
+      val result = createRunner().withArguments("repositoryRouting", "--reset").build()
+
+      assertThat(parseDependencyRepos(result.output)).dependencyRepos {
+        index(0).excludeMatchers().modules("org.acme:lib")
+      }
+      assertThat(result).output().all {
+        contains("org.acme:lib -> nexus")
+        contains("org.mixed:lib -> MavenRepo, nexus")
+        none { it.contains("org.acme:expired") || it.contains("org.legacy") }
+      }
+      assertThat(projectDir.resolve(".gradle/private-repo/routing.properties").readText())
+        .doesNotContain("org.acme")
+    }
+
+    @Test
+    fun `prefetch modules resolved by previous build`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusPrefetch = true
+      """.trimIndent())
+      projectDir.resolve("build.gradle.kts").writeText("""
+        plugins { java }
+        dependencies { implementation("com.google.guava:guava:31.0.1-jre") }
+        configurations.compileClasspath.get().resolve()
+      """.trimIndent())
+
+      createRunner().withArguments("compileJava").build()
+      assertThat(projectDir.resolve(".gradle/private-repo/resolved-modules.txt").readText().lines())
+        .contains("com.google.guava:guava:31.0.1-jre")
+
+      val result = createRunner().withArguments("-i", "compileJava").build()
+      assertThat(result).output().all {
+        any { it.contains("Prefetching") && it.contains("modules in background") }
+        any { it.contains("Prefetched") && it.contains("artifacts of") }
+        any { it.contains("Waited") && it.contains("for prefetch") }
+      }
+    }
+
+    @Test
+    fun `prefetch skipped for tasks not resolving dependencies`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusPrefetch = true
+      """.trimIndent())
+      projectDir.resolve(".gradle/private-repo").mkdirs()
+      projectDir.resolve(".gradle/private-repo/resolved-modules.txt").writeText("com.google.guava:guava:31.0.1-jre\n")
+
+      val result = createRunner().withArguments("-i", "help", "clean").build()
+      assertThat(result).output().all {
+        any { it.contains("Nothing to prefetch for [help, clean]") }
+        none { it.contains("Prefetching") }
+      }
+    }
+
+    @Test
+    fun `prefetch with parallel project configuration`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusPrefetch = true
+      """.trimIndent())
+      projectDir.resolve("settings.gradle.kts").appendText("""
+
+        include("a", "b", "c")
+      """.trimIndent())
+      for (name in listOf("a", "b", "c")) {
+        projectDir.resolve(name).mkdirs()
+        projectDir.resolve("$name/build.gradle.kts").writeText("""
+          plugins { java }
+          dependencies { implementation("com.google.guava:guava:31.0.1-jre") }
+          configurations.compileClasspath.get().resolve()
+        """.trimIndent())
+      }
+
+      createRunner().withArguments("--parallel", "compileJava").build()
+
+      val result = createRunner().withArguments("--parallel", "-i", "compileJava").build()
+      assertThat(result).output().any { it.contains("Prefetched") && it.contains("modules") }
+      assertThat(projectDir.resolve(".gradle/private-repo/resolved-modules.txt").readText().lines())
+        .contains("com.google.guava:guava:31.0.1-jre")
+    }
+
+    @Test
+    fun `named repositories`() {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusRepositories = internal-releases, hosted-a
+      nexusRepositoryInternalReleasesGroups = org.example.lib
+      nexusRepositoryInternalReleasesExclusive = true
+      nexusRepositoryHostedAGroupRegexes = org\\.acme(\\..*)?
+      """.trimIndent())
+
+      val result = createRunner().build()
+
+      assertThat(parseDependencyRepos(result.output)).all {
+        hasSize(4)
+        index(0).mavenCentral().all {
+          excludeMatchers().groups("org.example.lib")
+          excludeMatchers().groupRegexes("com\\.example(\\..*)?", "org\\.acme(\\..*)?")
+        }
+        index(1).nexus().includeMatchers().isEmpty()
+        index(2).repo("nexusHostedA", "https://nexus.example.com/repository/hosted-a")
+          .includeMatchers().groupRegexes("org\\.acme(\\..*)?")
+        index(3).repo("nexusInternalReleases", "https://nexus.example.com/repository/internal-releases")
+      }
+    }
+  }
+
+  @Nested
+  inner class HealthCheck {
+    private val healthy = startStubServer(200)
+    private val degraded = startStubServer(503)
+
+    @AfterEach
+    fun stopServers() {
+      healthy.stop(0)
+      degraded.stop(0)
+    }
+
+    private fun configure(nexusUrl: String) {
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusUrl = $nexusUrl
+      nexusDefaultGroupRegex = false
+      nexusMirror = true
+      nexusMavenCentralMirror =
+      nexusGradlePluginPortalMirror =
+      nexusHealthCheck = true
+      nexusHealthCheckTimeout = 1000
+
+      """.trimIndent())
+    }
+
+    @Test
+    fun `healthy repositories`() {
+      configure(healthy.url)
+
+      val result = createRunner().build()
+
+      assertThat(parseDependencyRepos(result.output)).all {
+        hasSize(1)
+        index(0).repo("nexus", "${healthy.url}/repository/public")
+      }
+    }
+
+    @Test
+    fun `fails fast if nexus degraded`() {
+      configure(degraded.url)
+
+      val result = createRunner().buildAndFail()
+
+      assertThat(result).output().all {
+        any { it.contains("Repository health check failed") }
+        any { it.contains("nexus(${degraded.url}/repository/public): HTTP 503") }
+      }
+    }
+
+    @Test
+    fun `selects fastest nexus mirror`() {
+      val slow = startStubServer(200, delayMillis = 500)
+      try {
+        configure("${slow.url}, ${healthy.url}")
+
+        val result = createRunner().build()
+
+        assertThat(parseDependencyRepos(result.output)).all {
+          hasSize(1)
+          index(0).repo("nexus", "${healthy.url}/repository/public")
+        }
+      } finally {
+        slow.stop(0)
+      }
+    }
+
+    @Test
+    fun `skips degraded nexus mirror`() {
+      val slow = startStubServer(200, delayMillis = 500)
+      try {
+        configure("${slow.url}, ${degraded.url}")
+
+        val result = createRunner().build()
+
+        assertThat(parseDependencyRepos(result.output)).all {
+          hasSize(1)
+          index(0).repo("nexus", "${slow.url}/repository/public")
+        }
+      } finally {
+        slow.stop(0)
+      }
+    }
+
+    @Test
+    fun `switches to fallback nexus`() {
+      configure(degraded.url)
+      projectDir.resolve("gradle.properties").appendText("""
+      nexusHealthCheckFallbackUrl = ${healthy.url}
+      """.trimIndent())
+
+      val result = createRunner().build()
+
+      assertThat(parseDependencyRepos(result.output)).all {
+        hasSize(1)
+        index(0).repo("nexus", "${healthy.url}/repository/public")
+      }
+    }
   }
 
   abstract inner class BootstrapManifestsBase {
@@ -192,6 +490,39 @@ class PrivateRepoPluginFunctionalTest {
 
       assertThat(result).output().any { it.contains("DEP|guava|jar|31") }
     }
+
+    @Test
+    fun `values set after from kept`() {
+      projectDir.resolve("settings.gradle.kts").appendText("""
+        privateRepo {
+          manifests {
+            named("dummy") { description.set("overridden") }
+          }
+        }
+        gradle.projectsLoaded {
+          println("MANIFEST|" + privateRepo.manifests["dummy"].description.get())
+        }
+
+      """.trimIndent())
+
+      val result = createRunner(gradleVersion).withArguments("-I", "dummy-repo.init.gradle.kts", "clean").build()
+
+      assertThat(result).output().any { it.contains("MANIFEST|overridden") }
+    }
+
+    @Test
+    fun `cache warmed by bootstrap`() {
+      configureBootstrapCatalogs()
+
+      val result = createRunner(gradleVersion)
+        .withArguments("-I", "dummy-repo.init.gradle.kts", "warmBootstrapCache", "--read-only-cache=build/ro-cache")
+        .build()
+
+      assertThat(result).output().any { it.contains("Prefetched") && it.contains("and 1 catalogs") }
+      assertThat(projectDir.resolve("build/ro-cache/modules-2").isDirectory).isTrue()
+      // settings buildscript classpath is in the module cache too, but isn't a part of bootstrap manifests
+      assertThat(projectDir.resolve("build/ro-cache/modules-2/files-2.1/com.fasterxml.jackson.core").exists()).isFalse()
+    }
   }
 
   @Nested
@@ -214,6 +545,79 @@ class PrivateRepoPluginFunctionalTest {
     }
   }
 
+  @Nested
+  inner class BatchedBootstrapManifests : BootstrapManifests() {
+    override fun configureBootstrap() {
+      projectDir.resolve("gradle.properties").appendText("""
+        nexusBootstrapBatch = true
+
+      """.trimIndent())
+
+      super.configureBootstrap()
+    }
+  }
+
+  @Nested
+  inner class LastKnownGoodBootstrapManifests {
+    @BeforeEach
+    fun init() {
+      for ((name, repo) in listOf("dummy-repo" to "repo", "missing-repo" to "missing")) {
+        projectDir.resolve("$name.init.gradle.kts").writeText("""
+          gradle.beforeSettings {
+            pluginManagement.repositories.maven {
+              name = "TestMaven"
+              url = uri("$repo")
+            }
+            dependencyResolutionManagement.repositories.maven {
+              name = "TestMaven"
+              url = uri("$repo")
+            }
+          }
+        """.trimIndent())
+      }
+
+      projectDir.resolve("gradle.properties").appendText("""
+        nexusBootstrapLastKnownGood = true
+
+      """.trimIndent())
+
+      projectDir.resolve("settings.gradle.kts").appendText("""
+        privateRepo {
+          manifests {
+            create("dummy") { from("org.example:manifest:1.0") }
+          }
+        }
+
+      """.trimIndent())
+    }
+
+    @Test
+    fun `last known good manifest and catalog used when resolution fails`() {
+      val d = "$"
+      projectDir.resolve("build.gradle.kts").writeText("""
+        plugins { java }
+        dependencies { implementation(dummy.guava) }
+        configurations.compileClasspath.get().resolvedConfiguration.resolvedArtifacts.forEach {
+          logger.lifecycle("DEP|$d{it.name}|$d{it.type}|$d{it.moduleVersion.id.version}")
+        }
+      """.trimIndent())
+
+      assertThat(createRunner().withArguments("-I", "dummy-repo.init.gradle.kts", "--info", "clean").build()).output()
+        .any { it.contains("Saving catalogs [dummy] of last known good bootstrap manifest org.example:manifest:1.0") }
+
+      // complete snapshot isn't saved again
+      assertThat(createRunner().withArguments("-I", "dummy-repo.init.gradle.kts", "--info", "clean").build()).output()
+        .none { it.contains("last known good") }
+
+      val result = createRunner().withArguments("-I", "missing-repo.init.gradle.kts", "clean").build()
+
+      assertThat(result).output().all {
+        any { it.contains("Using last known good bootstrap manifest org.example:manifest:1.0 for dummy") }
+        any { it.contains("DEP|guava|jar|31") }
+      }
+    }
+  }
+
   private fun createRunner(gradleVersion: String? = null) = createRunner(projectDir, gradleVersion)
     .withArguments("clean")
 
@@ -339,13 +743,17 @@ private fun Assert<List<RepoFilter>>.groups(vararg regex: String) = prop("group"
   filters.mapNotNull { it.group }.toSet()
 }.containsOnly(*regex)
 
+private fun Assert<List<RepoFilter>>.modules(vararg module: String) = prop("module") { filters ->
+  filters.filter { it.group != null && it.module != null }.map { "${it.group}:${it.module}" }.toSet()
+}.containsOnly(*module)
+
 private val mapper = jacksonObjectMapper()
   .findAndRegisterModules()
   .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
 
 private fun parseRepos(data: String, prefix: String) = data.lineSequence()
   .filter { it.startsWith("$prefix|") }
-  .map { it.split('|') }
+  .map { it.split('|', limit = 4) }
   .map { Repo(it[1], it[2], mapper.readValue(it[3])) }
   .toList()
 
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+
+class PrivateRepoPublishPluginFunctionalTest {
+  private val projectDir = createProjectDir()
+
+  private lateinit var repo: StubMavenRepository
+
+  private fun createProject(
+    failures: Int = 0,
+    componentsApi: Boolean = false,
+    componentFailures: Int = 0,
+    concurrent: Boolean = true,
+    version: String = "1.0.0",
+  ) {
+    repo = StubMavenRepository(failures, componentsApi = componentsApi, componentFailures = componentFailures)
+
+    projectDir.resolve("settings.gradle.kts").writeText("""
+      rootProject.name = "lib"
+    """.trimIndent())
+
+    projectDir.resolve("gradle.properties").writeText("""
+      nexusUrl = ${repo.url}
+      nexusUsername = user
+      nexusPassword = password
+      nexusConcurrentPublish = $concurrent
+    """.trimIndent())
+
+    projectDir.resolve("build.gradle.kts").writeText("""
+      plugins {
+        `java-library`
+        id("ws.gross.private-repo-publish")
+      }
+
+      group = "org.example"
+      version = "$version"
+
+      // stub repository is plain http, standard publish tasks refuse it otherwise
+      publishing.repositories.withType<MavenArtifactRepository>().configureEach {
+        isAllowInsecureProtocol = true
+      }
+
+      java {
+        withSourcesJar()
+        withJavadocJar()
+      }
+
+      publishing {
+        publications {
+          create<MavenPublication>("maven") {
+            from(components["java"])
+          }
+        }
+      }
+    """.trimIndent())
+
+    projectDir.resolve("src/main/java/org/example").apply {
+      mkdirs()
+      resolve("Lib.java").writeText("package org.example; public class Lib {}")
+    }
+  }
+
+  @AfterEach
+  fun stopRepo() {
+    repo.close()
+  }
+
+  @Test
+  fun `artifacts uploaded concurrently before metadata`() {
+    createProject()
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(result).task(":publishMavenPublicationToNexusSnapshotsRepositoryConcurrently").isSkipped()
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepository").isSkipped()
+
+    val base = "repository/releases/org/example/lib"
+    assertThat(repo.files.keys).containsAll(
+      "$base/1.0.0/lib-1.0.0.jar",
+      "$base/1.0.0/lib-1.0.0.jar.sha1",
+      "$base/1.0.0/lib-1.0.0-sources.jar",
+      "$base/1.0.0/lib-1.0.0-javadoc.jar",
+      "$base/1.0.0/lib-1.0.0.pom",
+      "$base/1.0.0/lib-1.0.0.module",
+      "$base/maven-metadata.xml",
+    )
+    assertThat(repo.uploads.takeLastWhile { it.startsWith("$base/maven-metadata.xml") }).hasSize(5)
+    assertThat(repo.uploads.dropLast(5)).none { it.contains("maven-metadata.xml") }
+    assertThat(String(repo.files.getValue("$base/maven-metadata.xml"))).contains("<version>1.0.0</version>")
+    assertThat(repo.maxConcurrentUploads.get()).isGreaterThan(1)
+  }
+
+  @Test
+  fun `unchanged artifacts skipped`() {
+    createProject()
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishSkipUnchanged = true\n")
+
+    createRunner(projectDir).withArguments("publish").build()
+    val uploads = repo.uploads.size
+    projectDir.resolve("src/main/java/org/example/Lib.java").writeText("package org.example; public class Lib { int x; }")
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(result).output().any { it.contains("unchanged files") && it.contains("skipped") }
+    assertThat(repo.uploads.drop(uploads)).all {
+      contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar")
+      contains("repository/releases/org/example/lib/maven-metadata.xml")
+      doesNotContain("repository/releases/org/example/lib/1.0.0/lib-1.0.0.pom")
+    }
+  }
+
+  @Test
+  fun `identical manifest not uploaded`() {
+    createProject()
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishSkipUnchanged = true\n")
+    projectDir.resolve("build.gradle.kts").writeText("""
+      plugins {
+        id("ws.gross.bootstrap-manifest")
+        id("ws.gross.private-repo-publish")
+      }
+
+      group = "org.example"
+      version = "1.0.0"
+
+      manifest {
+        bootstrapManifest {
+          description.set("some description")
+          plugin("some.plugin")
+        }
+      }
+    """.trimIndent())
+
+    createRunner(projectDir).withArguments("publish").build()
+    assertThat(repo.files.keys).contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.properties")
+    val uploads = repo.uploads.size
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishManifestMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(result).output().any { it.contains("org.example:lib:1.0.0 is already published") }
+    assertThat(repo.uploads).hasSize(uploads)
+  }
+
+  @Test
+  fun `release uploaded with single components api request`() {
+    createProject(componentsApi = true)
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishTransport = components\n")
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(repo.uploads).isEmpty()
+    assertThat(repo.components).hasSize(1)
+    assertThat(repo.components[0].filterKeys { it.endsWith(".extension") }.values.sorted())
+      .containsExactly("jar", "jar", "jar", "module", "pom")
+    assertThat(repo.components[0]).all {
+      key("maven2.asset1").endsWith(" bytes")
+      doesNotContainKey("maven2.groupId")
+    }
+  }
+
+  @Test
+  fun `component stored before failed response isn't posted again`() {
+    createProject(componentsApi = true, componentFailures = 1)
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishTransport = components\n")
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(repo.components).hasSize(1)
+    assertThat(repo.files.keys).contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar")
+  }
+
+  @Test
+  fun `all assets of changed component uploaded`() {
+    createProject(componentsApi = true)
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishTransport = components\nnexusPublishSkipUnchanged = true\n")
+
+    createRunner(projectDir).withArguments("publish").build()
+    val unchanged = createRunner(projectDir).withArguments("publish").build()
+    assertThat(unchanged).output().any { it.contains("org.example:lib:1.0.0 is already published") }
+    assertThat(repo.components).hasSize(1)
+
+    projectDir.resolve("src/main/java/org/example/Lib.java").writeText("package org.example; public class Lib { int x; }")
+    createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(repo.components).hasSize(2)
+    assertThat(repo.components[1].filterKeys { it.endsWith(".extension") }.values.sorted())
+      .containsExactly("jar", "jar", "jar", "module", "pom")
+  }
+
+  @Test
+  fun `per-file uploads without components api`() {
+    createProject()
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishTransport = components\n")
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).output().any { it.contains("Nexus components API isn't available") }
+    assertThat(repo.files.keys).contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar")
+  }
+
+  @Test
+  fun `failed uploads retried`() {
+    createProject(failures = 1)
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(repo.attempts["repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar"]?.get()).isEqualTo(2)
+    assertThat(repo.files.keys).contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar")
+  }
+
+  @Test
+  fun `uploads throttled on overload`() {
+    createProject(failures = 1)
+    projectDir.resolve("gradle.properties").appendText("\nnexusPublishThrottle = true\n")
+
+    val result = createRunner(projectDir).withArguments("publish").build()
+
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(result).output().any { it.contains("Nexus was overloaded") }
+  }
+
+  @Test
+  fun `publish reuses configuration cache with isolated projects`() {
+    createProject()
+    val runner = createRunner(projectDir)
+      .withArguments("publish", "-Dorg.gradle.unsafe.isolated-projects=true")
+      .withConfigurationCache()
+
+    runner.build()
+    val result = runner.build()
+
+    assertThat(result).reusedConfigurationCache()
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSuccess()
+    assertThat(result).task(":publishMavenPublicationToNexusSnapshotsRepositoryConcurrently").isSkipped()
+  }
+
+  @Test
+  fun `dev version routed to snapshots with configuration cache`() {
+    createProject(version = "1.1.0-dev.1+abc123")
+    val runner = createRunner(projectDir).withArguments("publish").withConfigurationCache()
+
+    runner.build()
+    val result = runner.build()
+
+    assertThat(result).reusedConfigurationCache()
+    assertThat(result).task(":publishMavenPublicationToNexusSnapshotsRepositoryConcurrently").isSuccess()
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepositoryConcurrently").isSkipped()
+    assertThat(repo.files.keys).none { it.startsWith("repository/releases/") }
+  }
+
+  @Test
+  fun `release published by standard tasks with configuration cache and isolated projects`() {
+    createProject(concurrent = false)
+    val runner = createRunner(projectDir)
+      .withArguments("publish", "-Dorg.gradle.unsafe.isolated-projects=true")
+      .withConfigurationCache()
+
+    runner.build()
+    val result = runner.build()
+
+    assertThat(result).reusedConfigurationCache()
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepository").isSuccess()
+    assertThat(result).task(":publishMavenPublicationToNexusSnapshotsRepository").isSkipped()
+    assertThat(repo.files.keys).all {
+      contains("repository/releases/org/example/lib/1.0.0/lib-1.0.0.jar")
+      none { it.startsWith("repository/snapshots/") }
+    }
+  }
+
+  @Test
+  fun `dev version published by standard tasks with configuration cache and isolated projects`() {
+    createProject(concurrent = false, version = "1.1.0-dev.1+abc123")
+    val runner = createRunner(projectDir)
+      .withArguments("publish", "-Dorg.gradle.unsafe.isolated-projects=true")
+      .withConfigurationCache()
+
+    runner.build()
+    val result = runner.build()
+
+    assertThat(result).reusedConfigurationCache()
+    assertThat(result).task(":publishMavenPublicationToNexusSnapshotsRepository").isSuccess()
+    assertThat(result).task(":publishMavenPublicationToNexusReleasesRepository").isSkipped()
+    assertThat(repo.files.keys).all {
+      any { it.startsWith("repository/snapshots/org/example/lib/1.1.0-dev.1+abc123/") }
+      none { it.startsWith("repository/releases/") }
+    }
+  }
+}
@@ -16,11 +16,19 @@
 
 package ws.gross.gradle
 
+import com.sun.net.httpserver.HttpServer
 import org.gradle.internal.SystemProperties
 import org.gradle.testkit.runner.GradleRunner
 import org.gradle.testkit.runner.internal.DefaultGradleRunner
 import java.io.ByteArrayInputStream
 import java.io.File
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.security.MessageDigest
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 fun createProjectDir(): File {
   val baseDir = File(SystemProperties.getInstance().workerTmpDir ?: "build/tmp/functionalTest")
@@ -47,6 +55,123 @@ fun GradleRunner.withInteractiveInput(input: String?): GradleRunner = apply {
   (this as DefaultGradleRunner).withStandardInput(ByteArrayInputStream(input.toByteArray()))
 }
 
+// responds with given status to any request
+fun startStubServer(status: Int, delayMillis: Long = 0): HttpServer = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0).apply {
+  createContext("/") { exchange ->
+    if (delayMillis > 0) Thread.sleep(delayMillis)
+    exchange.sendResponseHeaders(status, -1)
+    exchange.close()
+  }
+  start()
+}
+
+val HttpServer.url get() = "http://${address.hostString}:${address.port}"
+
+// maven repository keeping uploaded files in memory, first `failures` uploads of each file fail with 503,
+// optionally implements nexus components api recording fields and file sizes of each multipart request,
+// component assets are stored with sha1 checksums and first `componentFailures` requests fail with 502 after that
+class StubMavenRepository(
+  private val failures: Int = 0,
+  private val delayMillis: Long = 50,
+  private val componentsApi: Boolean = false,
+  private val componentFailures: Int = 0,
+) : AutoCloseable {
+  val files: MutableMap<String, ByteArray> = ConcurrentHashMap()
+  val uploads: MutableList<String> = Collections.synchronizedList(mutableListOf())
+  val components: MutableList<Map<String, String>> = Collections.synchronizedList(mutableListOf())
+  val attempts: MutableMap<String, AtomicInteger> = ConcurrentHashMap()
+  val maxConcurrentUploads = AtomicInteger()
+
+  private val activeUploads = AtomicInteger()
+
+  private val executor = Executors.newFixedThreadPool(16)
+
+  private val server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0).apply {
+    createContext("/") { exchange ->
+      val path = exchange.requestURI.path.removePrefix("/")
+      when (exchange.requestMethod) {
+        "PUT" -> {
+          val active = activeUploads.incrementAndGet()
+          maxConcurrentUploads.accumulateAndGet(active, ::maxOf)
+          try {
+            val content = exchange.requestBody.readBytes()
+            Thread.sleep(delayMillis)
+            if (attempts.computeIfAbsent(path) { AtomicInteger() }.incrementAndGet() <= failures) {
+              exchange.sendResponseHeaders(503, -1)
+            } else {
+              files[path] = content
+              uploads.add(path)
+              exchange.sendResponseHeaders(201, -1)
+            }
+          } finally {
+            activeUploads.decrementAndGet()
+          }
+        }
+
+        "POST" -> if (componentsApi && path == "service/rest/v1/components") {
+          val parts = parseMultipart(exchange.requestHeaders.getFirst("Content-Type"), exchange.requestBody.readBytes())
+          components.add(parts.mapValues { (_, v) -> if (v is ByteArray) "${v.size} bytes" else v as String })
+          storeComponent(exchange.requestURI.query.substringAfter("repository="), parts)
+          exchange.sendResponseHeaders(if (components.size <= componentFailures) 502 else 204, -1)
+        } else {
+          exchange.sendResponseHeaders(404, -1)
+        }
+
+        "GET" -> {
+          val content = files[path]
+          if (content == null) {
+            exchange.sendResponseHeaders(404, -1)
+          } else {
+            exchange.sendResponseHeaders(200, content.size.toLong())
+            exchange.responseBody.use { it.write(content) }
+          }
+        }
+
+        else -> exchange.sendResponseHeaders(405, -1)
+      }
+      exchange.close()
+    }
+    executor = this@StubMavenRepository.executor
+    start()
+  }
+
+  val url get() = server.url
+
+  // field values as strings, file contents as byte arrays
+  private fun parseMultipart(contentType: String, body: ByteArray): Map<String, Any> {
+    val boundary = contentType.substringAfter("boundary=")
+    return String(body, Charsets.ISO_8859_1).split("--$boundary")
+      .filter { it.startsWith("\r\n") }
+      .associate { part ->
+        val (headers, content) = part.removePrefix("\r\n").split("\r\n\r\n", limit = 2)
+        val name = headers.substringAfter("name=\"").substringBefore("\"")
+        val value = content.removeSuffix("\r\n")
+        name to if (headers.contains("filename=")) value.toByteArray(Charsets.ISO_8859_1) else value
+      }
+  }
+
+  // coordinates are taken from the pom like nexus does, or from explicit fields without it
+  private fun storeComponent(repository: String, parts: Map<String, Any>) {
+    val assets = parts.keys.filter { it.matches(Regex("maven2\\.asset\\d+")) }
+    val pom = assets.firstOrNull { parts["$it.extension"] == "pom" }?.let { String(parts[it] as ByteArray) }
+    fun coordinate(name: String) = parts["maven2.$name"] as String? ?: Regex("<$name>(.*?)</$name>").find(pom!!)!!.groupValues[1]
+    val (groupId, artifactId, version) = listOf("groupId", "artifactId", "version").map(::coordinate)
+
+    for (asset in assets) {
+      val classifier = (parts["$asset.classifier"] as String?)?.let { "-$it" } ?: ""
+      val path = "repository/$repository/${groupId.replace('.', '/')}/$artifactId/$version/$artifactId-$version$classifier.${parts["$asset.extension"]}"
+      val content = parts[asset] as ByteArray
+      files[path] = content
+      files["$path.sha1"] = MessageDigest.getInstance("SHA-1").digest(content).joinToString("") { "%02x".format(it) }.toByteArray()
+    }
+  }
+
+  override fun close() {
+    server.stop(0)
+    executor.shutdownNow()
+  }
+}
+
 fun publishCatalogAndManifest(baseDir: File) {
   baseDir.mkdirs()
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Lookup cost of repository content filter with groups added one by one and compiled into a single regex.
+// Filters are checked like Gradle does it: exact groups and regexes one after another until first match.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GroupFilterBenchmark {
+  private static final List<String> PUBLIC_GROUPS = Arrays.asList(
+      "org.apache.commons", "com.google.guava", "org.jetbrains.kotlin", "com.fasterxml.jackson.core",
+      "org.slf4j", "io.netty", "org.junit.jupiter", "org.springframework.boot", "io.micrometer", "org.ow2.asm");
+
+  @Param({"20", "100", "500"})
+  public int groupCount;
+
+  private List<Predicate<String>> separate;
+
+  private List<Predicate<String>> compiled;
+
+  private String[] lookups;
+
+  @Setup
+  public void setup() {
+    // teams with a few libraries each, some teams listed by prefix, plus a couple of regexes
+    List<String> groups = new ArrayList<>();
+    for (int i = 0; groups.size() < groupCount; i++) {
+      if (i % 10 == 0) {
+        groups.add("com.example.team" + i + ".*");
+      } else {
+        groups.add("com.example.team" + i + ".lib" + (i % 3));
+      }
+    }
+    List<String> regexes = Arrays.asList("ru\\.example(\\..*)?", "org\\.example\\.legacy\\..*");
+
+    separate = filters(groups, regexes, Integer.MAX_VALUE);
+    compiled = filters(groups, regexes, 0);
+
+    // most lookups are for public modules, which have to be checked against every filter
+    Random random = new Random(42);
+    lookups = new String[1024];
+    for (int i = 0; i < lookups.length; i++) {
+      lookups[i] = random.nextInt(4) == 0
+          ? groups.get(random.nextInt(groups.size())).replace(".*", ".sub")
+          : PUBLIC_GROUPS.get(random.nextInt(PUBLIC_GROUPS.size()));
+    }
+  }
+
+  @Benchmark
+  public void separateFilters(Blackhole bh) {
+    for (String group : lookups) {
+      bh.consume(matches(separate, group));
+    }
+  }
+
+  @Benchmark
+  public void compiledFilter(Blackhole bh) {
+    for (String group : lookups) {
+      bh.consume(matches(compiled, group));
+    }
+  }
+
+  private static List<Predicate<String>> filters(List<String> groups, List<String> regexes, int threshold) {
+    List<Predicate<String>> result = new ArrayList<>();
+    GroupFilterCompiler.addFilters(groups, regexes, threshold,
+        g -> result.add(g::equals),
+        r -> {
+          Pattern pattern = Pattern.compile(r);
+          result.add(s -> pattern.matcher(s).matches());
+        });
+    return result;
+  }
+
+  private static boolean matches(List<Predicate<String>> filters, String group) {
+    for (Predicate<String> filter : filters) {
+      if (filter.test(group)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -80,9 +80,11 @@ public class BootstrapManifestBasePlugin implements Plugin<Project> {
       t.setDescription("Generate bootstrap manifest");
 
       t.getPluginIds().convention(manifest.getPluginIds());
+      t.getPluginModules().convention(manifest.getPluginModules());
       t.getCatalogIds().convention(manifest.getCatalogs());
       t.getVersion().convention(manifest.getVersion().map(Describable::getDisplayName));
       t.getManifestDescription().convention(manifest.getDescription());
+      t.getInlineCatalogs().convention(ext.getInlineCatalogs());
 
       t.getOutputFile().convention(project.getLayout().getBuildDirectory().file(manifest.getName() + ".properties"));
     });
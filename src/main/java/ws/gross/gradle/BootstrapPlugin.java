@@ -16,20 +16,285 @@
 
 package ws.gross.gradle;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.gradle.StartParameter;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.dsl.DependencyHandler;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.artifacts.verification.DependencyVerificationMode;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.attributes.Usage;
 import org.gradle.api.initialization.Settings;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.artifacts.DependencyResolutionServices;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
+import org.gradle.util.GradleVersion;
+import ws.gross.gradle.bootstrap.BootstrapManifestCache;
+import ws.gross.gradle.bootstrap.BootstrapManifestResolver;
+import ws.gross.gradle.bootstrap.DefaultBootstrapManifestBuilder;
+import ws.gross.gradle.bootstrap.LastKnownGoodManifests;
+import ws.gross.gradle.bootstrap.NamedBootstrapManifestBuilder;
+import ws.gross.gradle.bootstrap.ParsedManifests;
+import ws.gross.gradle.extensions.DefaultPrivateRepoExtension;
 import ws.gross.gradle.extensions.PrivateRepoExtension;
 import ws.gross.gradle.impl.BootstrapManifestAction;
+import ws.gross.gradle.tasks.BuildMetricsReportTask;
+import ws.gross.gradle.tasks.WarmBootstrapCacheTask;
+import ws.gross.gradle.utils.BuildMetrics;
+import ws.gross.gradle.utils.PhaseTracer;
+import ws.gross.gradle.utils.PrivateRepoSettings;
 
 public class BootstrapPlugin implements Plugin<Settings> {
+  private static final Logger logger = Logging.getLogger(BootstrapPlugin.class);
+
+  private static final GradleVersion BUILD_FEATURES_GRADLE_VERSION = GradleVersion.version("8.5");
+
+  private static final String BUILD_FEATURES_CLASS = "org.gradle.api.configuration.BuildFeatures";
+
+  public static final String MANIFEST_CACHE_PATH = "caches/private-repo/manifests";
+
+  public static final String SETTINGS_LOCKFILE_NAME = "settings-gradle.lockfile";
+
+  public static final String VERIFICATION_METADATA_PATH = "gradle/verification-metadata.xml";
+
+  public static final String METRICS_TASK_NAME = "bootstrapMetrics";
+
+  public static final String WARM_CACHE_TASK_NAME = "warmBootstrapCache";
+
+  public static final String WARM_CACHE_PLUGINS_CONFIGURATION_NAME = "warmBootstrapCachePlugins";
+
+  public static final String WARM_CACHE_CATALOGS_CONFIGURATION_NAME = "warmBootstrapCacheCatalogs";
+
+  private final ObjectFactory objectFactory;
+
+  @Inject
+  public BootstrapPlugin(ObjectFactory objectFactory) {
+    this.objectFactory = objectFactory;
+  }
+
   @Override
   public void apply(Settings settings) {
     settings.getPluginManager().apply(PrivateRepoBasePlugin.class);
 
     PrivateRepoExtension ext = settings.getExtensions().getByType(PrivateRepoExtension.class);
 
+    PrivateRepoSettings repoSettings = ((DefaultPrivateRepoExtension) ext).getPrivateRepoSettings();
+    BootstrapManifestResolver resolver = ((DefaultPrivateRepoExtension) ext).getManifestResolver();
+    resolver.setBatched(repoSettings.getBoolean("bootstrapBatch", false));
+
+    // shared by builds in the same daemon, not used with --refresh-dependencies
+    ParsedManifests parsedManifests = repoSettings.getBoolean("bootstrapMemoryCache", false)
+                                      && !settings.getStartParameter().isRefreshDependencies() ? ParsedManifests.shared() : null;
+    resolver.setParsedManifests(parsedManifests);
+
+    if (repoSettings.getBoolean("bootstrapCache", false) && !isLockedOrVerified(settings)) {
+      Duration ttl = Duration.ofMinutes(repoSettings.getLong("bootstrapCacheTtl", BootstrapManifestCache.DEFAULT_TTL.toMinutes()));
+      Path cacheDir = settings.getGradle().getGradleUserHomeDir().toPath().resolve(MANIFEST_CACHE_PATH);
+      BootstrapManifestCache cache = new BootstrapManifestCache(cacheDir, ttl, settings.getStartParameter().isRefreshDependencies());
+      cache.setParsedManifests(parsedManifests);
+      resolver.setCache(cache);
+    }
+
+    if (repoSettings.getBoolean("bootstrapLastKnownGood", false)) {
+      Path lkgDir = settings.getGradle().getGradleUserHomeDir().toPath().resolve(LastKnownGoodManifests.LAST_KNOWN_GOOD_PATH);
+      LastKnownGoodManifests lastKnownGood = new LastKnownGoodManifests(lkgDir);
+      lastKnownGood.setParsedManifests(parsedManifests);
+      resolver.setLastKnownGood(lastKnownGood);
+      // project repositories aren't declared yet, so catalogs are resolved from dependencyResolutionManagement ones
+      // like Gradle did it for version catalogs of applied manifests
+      settings.getGradle().rootProject(p -> resolver.completeLastKnownGood(notation -> resolveCatalog(p, notation)));
+    }
+
+    // registered before any manifest actions, so all manifests are resolved before they are applied
+    settings.getGradle().settingsEvaluated(s -> resolver.resolvePending());
+
     ext.getManifests().all(manifest -> {
-      settings.getGradle().settingsEvaluated(new BootstrapManifestAction(manifest.getName()));
+      settings.getGradle().settingsEvaluated(new BootstrapManifestAction(manifest.getName(), objectFactory));
+    });
+
+    settings.getGradle().rootProject(p -> p.getTasks().register(WARM_CACHE_TASK_NAME, WarmBootstrapCacheTask.class, t -> {
+      t.setGroup("build setup");
+      t.setDescription("Resolves plugins and catalogs of bootstrap manifests into Gradle module cache");
+      configureWarmCache(p, ext, t);
+    }));
+
+    if (repoSettings.getBoolean("metrics", false)) {
+      configureMetrics(settings, ext, resolver, repoSettings.getInt("metricsLimit", BuildMetrics.DEFAULT_LIMIT));
+    }
+  }
+
+  // Cached manifests skip resolution, so neither dependency locking nor verification would see them
+  private static boolean isLockedOrVerified(Settings settings) {
+    StartParameter sp = settings.getStartParameter();
+    boolean locking = sp.isWriteDependencyLocks() || !sp.getLockedDependenciesToUpdate().isEmpty()
+                      || new File(settings.getSettingsDir(), SETTINGS_LOCKFILE_NAME).isFile();
+    boolean verification = !sp.getWriteDependencyVerifications().isEmpty()
+                           || sp.getDependencyVerificationMode() != DependencyVerificationMode.OFF
+                              && new File(settings.getRootDir(), VERIFICATION_METADATA_PATH).isFile();
+    if (locking || verification) {
+      logger.info("Bootstrap manifest cache is disabled since dependency locking or verification is used");
+    }
+    return locking || verification;
+  }
+
+  // BuildFeatures replaced StartParameter flag in Gradle 8.5, older versions have only the latter.
+  // Plugin is compiled against older Gradle API, so BuildFeatures is looked up reflectively.
+  private static boolean isConfigurationCacheRequested(Settings settings) {
+    if (GradleVersion.current().getBaseVersion().compareTo(BUILD_FEATURES_GRADLE_VERSION) >= 0) {
+      try {
+        // methods are taken from public interfaces, implementations aren't accessible
+        Class<?> featuresType = Class.forName(BUILD_FEATURES_CLASS);
+        Method configurationCache = featuresType.getMethod("getConfigurationCache");
+        Object features = ((GradleInternal) settings.getGradle()).getServices().get(featuresType);
+        Object feature = configurationCache.invoke(features);
+        Provider<?> requested = (Provider<?>) configurationCache.getReturnType().getMethod("getRequested").invoke(feature);
+        return Boolean.TRUE.equals(requested.getOrNull());
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        logger.debug("Can't get configuration cache state from build features", e);
+      }
+    }
+    return isConfigurationCacheRequestedLegacy(settings.getStartParameter());
+  }
+
+  @SuppressWarnings("deprecation")
+  private static boolean isConfigurationCacheRequestedLegacy(StartParameter startParameter) {
+    return startParameter.isConfigurationCacheRequested();
+  }
+
+  // Plugins are resolved by marker or implementation module, all of them in a single resolution,
+  // so Gradle downloads them in parallel. Inline catalogs are skipped.
+  // Resolved with settings resolution services like manifests themselves, so repositories are the same as for plugins.
+  private void configureWarmCache(Project project, PrivateRepoExtension ext, WarmBootstrapCacheTask task) {
+    DependencyResolutionServices drs = ((DefaultPrivateRepoExtension) ext).getDependencyResolutionServices();
+    DependencyHandler dh = drs.getDependencyHandler();
+    List<Dependency> plugins = new ArrayList<>();
+    List<Dependency> catalogs = new ArrayList<>();
+    ext.getManifests().forEach(manifest -> {
+      if (!manifest.getVersion().isPresent()) {
+        return;
+      }
+      String version = manifest.getVersion().get().getRequiredVersion();
+      Map<String, String> pluginModules = manifest.getPluginModules().getOrElse(Collections.emptyMap());
+      manifest.getPluginIds().getOrElse(Collections.emptyList()).forEach(pluginId -> {
+        String module = pluginModules.get(pluginId);
+        String notation = module == null ? pluginId + ":" + pluginId + ".gradle.plugin:" + version
+            : module.split(":").length > 2 ? module : module + ":" + version;
+        plugins.add(dh.create(notation));
+      });
+
+      Map<String, String> catalogContents = manifest instanceof DefaultBootstrapManifestBuilder
+          ? ((DefaultBootstrapManifestBuilder) manifest).getCatalogContents().getOrElse(Collections.emptyMap())
+          : Collections.emptyMap();
+      manifest.getCatalogs().getOrElse(Collections.emptyMap()).forEach((alias, notation) -> {
+        if (!catalogContents.containsKey(alias)) {
+          catalogs.add(dh.create(notation + ":" + version));
+        }
+      });
+    });
+
+    Configuration pluginsConf = drs.getConfigurationContainer().create(WARM_CACHE_PLUGINS_CONFIGURATION_NAME, c -> {
+      c.setCanBeConsumed(false);
+      c.setCanBeResolved(true);
+      c.getDependencies().addAll(plugins);
+    });
+    Configuration catalogsConf = drs.getConfigurationContainer().create(WARM_CACHE_CATALOGS_CONFIGURATION_NAME, c -> {
+      c.setCanBeConsumed(false);
+      c.setCanBeResolved(true);
+      c.getDependencies().addAll(catalogs);
+      c.attributes(a -> {
+        a.attribute(Category.CATEGORY_ATTRIBUTE, objectFactory.named(Category.class, Category.REGULAR_PLATFORM));
+        a.attribute(Usage.USAGE_ATTRIBUTE, objectFactory.named(Usage.class, Usage.VERSION_CATALOG));
+      });
     });
+
+    task.getPluginArtifacts().from(pluginsConf);
+    task.getCatalogArtifacts().from(catalogsConf);
+    task.getResolvedModules().add(pluginsConf.getIncoming().getResolutionResult().getRootComponent());
+    task.getResolvedModules().add(catalogsConf.getIncoming().getResolutionResult().getRootComponent());
+    task.getModuleCache().set(project.getGradle().getGradleUserHomeDir().toPath()
+        .resolve(WarmBootstrapCacheTask.MODULE_CACHE_PATH).toFile());
+    task.notCompatibleWithConfigurationCache("Resolves with settings dependency resolution services");
+  }
+
+  private Optional<String> resolveCatalog(Project project, String notation) {
+    Configuration cnf = project.getConfigurations().detachedConfiguration(project.getDependencies().create(notation));
+    cnf.attributes(a -> {
+      a.attribute(Category.CATEGORY_ATTRIBUTE, objectFactory.named(Category.class, Category.REGULAR_PLATFORM));
+      a.attribute(Usage.USAGE_ATTRIBUTE, objectFactory.named(Usage.class, Usage.VERSION_CATALOG));
+    });
+
+    try {
+      Set<ResolvedArtifactResult> artifacts = cnf.getIncoming().getArtifacts().getArtifacts();
+      if (artifacts.size() != 1) {
+        logger.info("Catalog {} is not saved as last known good: expected single artifact, got {}", notation, artifacts.size());
+        return Optional.empty();
+      }
+      return Optional.of(new String(Files.readAllBytes(artifacts.iterator().next().getFile().toPath()), StandardCharsets.UTF_8));
+    } catch (GradleException | IOException e) {
+      logger.info("Catalog {} is not saved as last known good: {}", notation, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private static void configureMetrics(Settings settings, PrivateRepoExtension ext, BootstrapManifestResolver resolver, int limit) {
+    String rootDir = settings.getRootDir().getAbsolutePath();
+    Path metricsFile = settings.getGradle().getGradleUserHomeDir().toPath()
+        .resolve(BuildMetrics.METRICS_CACHE_PATH)
+        .resolve(String.format("%s-%08x.tsv", settings.getRootDir().getName(), rootDir.hashCode()));
+    PhaseTracer tracer = ((DefaultPrivateRepoExtension) ext).getTracer();
+    // nothing is recorded when configuration cache entry is reused, settings plugin isn't applied then
+    boolean configurationCacheRequested = isConfigurationCacheRequested(settings);
+
+    // all manifests are applied in settingsEvaluated callbacks
+    settings.getGradle().projectsLoaded(g -> {
+      int plugins = 0;
+      int catalogs = 0;
+      for (NamedBootstrapManifestBuilder manifest : ext.getManifests()) {
+        plugins += manifest.getPluginIds().getOrElse(Collections.emptyList()).size();
+        catalogs += manifest.getCatalogs().getOrElse(Collections.emptyMap()).size();
+      }
+
+      BuildMetrics.append(metricsFile, new BuildMetrics(
+          Instant.now(),
+          TimeUnit.NANOSECONDS.toMillis(tracer.totalNanos("bootstrapManifest")),
+          ext.getManifests().size(),
+          plugins,
+          catalogs,
+          resolver.getCacheHits(),
+          resolver.getCacheMisses(),
+          configurationCacheRequested,
+          resolver.getResolved()
+      ), limit);
+    });
+
+    settings.getGradle().rootProject(p -> p.getTasks().register(METRICS_TASK_NAME, BuildMetricsReportTask.class, t -> {
+      t.setGroup("help");
+      t.setDescription("Prints bootstrap time trends of recorded builds");
+      t.getMetricsFile().set(metricsFile.toFile());
+    }));
   }
 }
@@ -18,6 +18,7 @@ package ws.gross.gradle;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.function.Supplier;
 
 import javax.inject.Inject;
@@ -30,6 +31,8 @@ import org.gradle.plugin.use.internal.PluginDependencyResolutionServices;
 import org.jetbrains.annotations.NotNull;
 import ws.gross.gradle.extensions.DefaultPrivateRepoExtension;
 import ws.gross.gradle.extensions.PrivateRepoExtension;
+import ws.gross.gradle.utils.PhaseTracer;
+import ws.gross.gradle.utils.PrivateRepoSettings;
 
 public class PrivateRepoBasePlugin implements Plugin<Settings> {
   private static final String GET_DRS_METHOD_NAME = "getDependencyResolutionServices";
@@ -43,17 +46,28 @@ public class PrivateRepoBasePlugin implements Plugin<Settings> {
 
   @Override
   public void apply(Settings settings) {
+    PrivateRepoSettings repoSettings = PrivateRepoSettings.from(settings.getProviders());
+    boolean trace = repoSettings.getBoolean("trace", false);
+    // phase timings are also used by build metrics
+    PhaseTracer tracer = PhaseTracer.create(trace || repoSettings.getBoolean("metrics", false));
+    if (trace) {
+      Path tracePath = settings.getRootDir().toPath().resolve(PhaseTracer.TRACE_PATH);
+      settings.getGradle().projectsLoaded(g -> tracer.write(tracePath));
+    }
+
     settings.getExtensions().create(
         PrivateRepoExtension.class,
         "privateRepo",
         DefaultPrivateRepoExtension.class,
-        getDrsSupplier()
+        getDrsSupplier(tracer),
+        repoSettings,
+        tracer
     );
   }
 
   @NotNull
-  private Supplier<DependencyResolutionServices> getDrsSupplier() {
-    return () -> {
+  private Supplier<DependencyResolutionServices> getDrsSupplier(PhaseTracer tracer) {
+    return () -> tracer.trace("dependencyResolutionServices", () -> {
       try {
         Method getter = pluginDependencyResolutionServices.getClass().getDeclaredMethod(GET_DRS_METHOD_NAME);
         getter.setAccessible(true);
@@ -63,6 +77,6 @@ public class PrivateRepoBasePlugin implements Plugin<Settings> {
             PluginDependencyResolutionServices.class.getName(), GET_DRS_METHOD_NAME,
             e.getClass().getSimpleName(), e.getMessage()));
       }
-    };
+    });
   }
 }
@@ -16,24 +16,48 @@
 
 package ws.gross.gradle;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
-import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.credentials.PasswordCredentials;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.publish.PublishingExtension;
+import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.publish.maven.internal.publication.MavenPublicationInternal;
+import org.gradle.api.publish.maven.internal.publisher.MavenNormalizedPublication;
 import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.publish.plugins.PublishingPlugin;
+import ws.gross.gradle.impl.UploadThrottle;
+import ws.gross.gradle.tasks.ConcurrentPublishToMavenRepository;
+import ws.gross.gradle.utils.MavenRepositoryUploader;
 import ws.gross.gradle.utils.NexusConfiguration;
+import ws.gross.gradle.utils.PrivateRepoSettings;
 import ws.gross.gradle.utils.PublishTaskInfo;
 import ws.gross.gradle.utils.VersionInfo;
 
-import static ws.gross.gradle.utils.GradleUtils.gradlePropertyOrEnvVar;
 import static ws.gross.gradle.utils.GradleUtils.maven;
 import static ws.gross.gradle.utils.NexusConfiguration.RELEASES_REPO_NAME;
 import static ws.gross.gradle.utils.NexusConfiguration.SNAPSHOTS_REPO_NAME;
+import static ws.gross.gradle.utils.StringUtils.nullToEmpty;
 
 
 public class PrivateRepoPublishPlugin implements Plugin<Project> {
+  private static final Logger logger = Logging.getLogger(PrivateRepoPublishPlugin.class);
+
+  private static final String RELEASE = "release";
+
+  private static final String SNAPSHOT = "snapshot";
+
+  private static final String UNKNOWN = "unknown";
+
   private NexusConfiguration conf;
 
   @Override
@@ -42,35 +66,124 @@ public class PrivateRepoPublishPlugin implements Plugin<Project> {
     PublishingExtension publishing = project.getExtensions().getByType(PublishingExtension.class);
 
     ProviderFactory providers = project.getProviders();
-    conf = NexusConfiguration.from(providers);
+    PrivateRepoSettings repoSettings = PrivateRepoSettings.from(providers);
+    conf = NexusConfiguration.from(repoSettings, providers, project.getGradle().getStartParameter());
 
-    Provider<String> releasesRepo = gradlePropertyOrEnvVar(providers, "releasesRepo").orElse("releases");
-    Provider<String> snapshotsRepo = gradlePropertyOrEnvVar(providers, "snapshotsRepo").orElse("snapshots");
+    String releasesRepo = repoSettings.getString("releasesRepo", "releases");
+    String snapshotsRepo = repoSettings.getString("snapshotsRepo", "snapshots");
 
     publishing.repositories(rh -> {
       maven(rh, RELEASES_REPO_NAME, conf.repoUrl(releasesRepo), conf.getCredentials());
       maven(rh, SNAPSHOTS_REPO_NAME, conf.repoUrl(snapshotsRepo), conf.getCredentials());
     });
 
+    // bounds publish tasks running at once and http requests of concurrent publish tasks across all projects
+    Provider<UploadThrottle> throttle = !repoSettings.getBoolean("publishThrottle", false) ? null
+        : project.getGradle().getSharedServices().registerIfAbsent(UploadThrottle.SERVICE_NAME, UploadThrottle.class, spec -> {
+          spec.getMaxParallelUsages().set(repoSettings.getInt("publishMaxParallelTasks", UploadThrottle.DEFAULT_MAX_PARALLEL_TASKS));
+          spec.getParameters().getInitialRequests().set(
+              repoSettings.getInt("publishConnections", MavenRepositoryUploader.DEFAULT_MAX_CONNECTIONS));
+          spec.getParameters().getMaxRequests().set(repoSettings.getInt("publishMaxRequests", UploadThrottle.DEFAULT_MAX_REQUESTS));
+        });
+
+    boolean concurrent = repoSettings.getBoolean("concurrentPublish", false);
+    if (concurrent) {
+      String transport = repoSettings.getString("publishTransport", "put");
+      if (!transport.equals("put") && !transport.equals("components")) {
+        throw new GradleException("Unknown nexusPublishTransport " + transport + ", expected put or components");
+      }
+      // only releases, nexus components api doesn't accept snapshots
+      Provider<String> componentsUrl = transport.equals("components")
+          ? conf.getBaseUrl().map(url -> url + "/service/rest/v1/components?repository=" + releasesRepo)
+          : providers.provider(() -> null);
+      publishing.getPublications().withType(MavenPublication.class).all(pub -> {
+        registerConcurrentPublish(project, (MavenPublicationInternal) pub, RELEASES_REPO_NAME, conf.repoUrl(releasesRepo), true,
+            componentsUrl);
+        registerConcurrentPublish(project, (MavenPublicationInternal) pub, SNAPSHOTS_REPO_NAME, conf.repoUrl(snapshotsRepo), false,
+            providers.provider(() -> null));
+      });
+
+      int maxConnections = repoSettings.getInt("publishConnections", MavenRepositoryUploader.DEFAULT_MAX_CONNECTIONS);
+      int maxAttempts = repoSettings.getInt("publishAttempts", MavenRepositoryUploader.DEFAULT_MAX_ATTEMPTS);
+      boolean skipUnchanged = repoSettings.getBoolean("publishSkipUnchanged", false);
+      project.getTasks().withType(ConcurrentPublishToMavenRepository.class).configureEach(t -> {
+        t.getMaxConnections().set(maxConnections);
+        t.getMaxAttempts().set(maxAttempts);
+        t.getSkipUnchanged().set(skipUnchanged);
+        if (throttle != null) {
+          t.usesService(throttle);
+          t.getThrottle().set(throttle);
+        }
+      });
+    }
+
+    // classified once, tasks capture only the provider and a flag, so nothing refers to the project at execution time
+    Provider<String> versionKind = providers.provider(() -> project.getVersion().toString()).map(PrivateRepoPublishPlugin::versionKind);
+
     project.getTasks().withType(PublishToMavenRepository.class).configureEach(t -> {
-      String repositoryName = PublishTaskInfo.of(t.getName()).map(PublishTaskInfo::getRepository).orElse(null);
-      if (repositoryName == null) {
+      PublishTaskInfo info = PublishTaskInfo.of(t.getName()).orElse(null);
+      String repositoryName = info == null ? null : info.getRepository();
+      if (repositoryName == null || !(repositoryName.equals(RELEASES_REPO_NAME) || repositoryName.equals(SNAPSHOTS_REPO_NAME))) {
         return;
       }
 
-      RepositoryHandler repos = publishing.getRepositories();
-      if (repositoryName.equals(RELEASES_REPO_NAME) || repositoryName.equals(SNAPSHOTS_REPO_NAME)) {
-        t.onlyIf(s -> {
-          VersionInfo versionInfo = VersionInfo.of(project.getVersion().toString()).orElse(null);
-          if (versionInfo == null) {
-            project.getLogger().warn("Can't parse project version {}", project.getVersion());
-            return false;
-          }
-
-          return (t.getRepository() == repos.getByName(RELEASES_REPO_NAME) && versionInfo.isRelease())
-                 || (t.getRepository() == repos.getByName(SNAPSHOTS_REPO_NAME) && !versionInfo.isRelease());
-        });
+      if (throttle != null && !concurrent) {
+        t.usesService(throttle);
       }
+
+      if (concurrent) {
+        // existing task names keep working, files are uploaded by the concurrent task
+        t.setEnabled(false);
+        t.dependsOn(ConcurrentPublishToMavenRepository.taskName(info.getPublication(), repositoryName));
+      } else {
+        String expectedKind = repositoryName.equals(RELEASES_REPO_NAME) ? RELEASE : SNAPSHOT;
+        t.onlyIf(s -> versionKind.get().equals(expectedKind));
+      }
+    });
+  }
+
+  private static String versionKind(String version) {
+    return VersionInfo.of(version).map(v -> v.isRelease() ? RELEASE : SNAPSHOT).orElseGet(() -> {
+      logger.warn("Can't parse version {}", version);
+      return UNKNOWN;
+    });
+  }
+
+  private void registerConcurrentPublish(
+      Project project,
+      MavenPublicationInternal publication,
+      String repositoryName,
+      Provider<String> repositoryUrl,
+      boolean releases,
+      Provider<String> componentsUrl
+  ) {
+    String name = ConcurrentPublishToMavenRepository.taskName(publication.getName(), repositoryName);
+    project.getTasks().register(name, ConcurrentPublishToMavenRepository.class, t -> {
+      t.setGroup(PublishingPlugin.PUBLISH_TASK_GROUP);
+      t.setDescription(String.format("Publishes Maven publication '%s' to Maven repository '%s' with concurrent uploads",
+          publication.getName(), repositoryName));
+
+      t.getRepositoryUrl().set(repositoryUrl);
+      t.getUsername().set(conf.getCredentials().map(c -> ((PasswordCredentials) c).getUsername()));
+      t.getPassword().set(conf.getCredentials().map(c -> ((PasswordCredentials) c).getPassword()));
+      t.getGroupId().set(project.provider(publication::getGroupId));
+      t.getArtifactId().set(project.provider(publication::getArtifactId));
+      t.getVersion().set(project.provider(publication::getVersion));
+      t.getArtifacts().set(project.provider(() -> artifacts(publication)));
+      t.getArtifactFiles().from(publication.getPublishableArtifacts().getFiles());
+      t.getComponentsUrl().set(componentsUrl);
+
+      Provider<String> versionKind = t.getVersion().map(PrivateRepoPublishPlugin::versionKind);
+      String expectedKind = releases ? RELEASE : SNAPSHOT;
+      t.onlyIf(s -> versionKind.get().equals(expectedKind));
     });
   }
+
+  private static Map<String, File> artifacts(MavenPublicationInternal publication) {
+    MavenNormalizedPublication normalized = publication.asNormalisedPublication();
+    Map<String, File> result = new LinkedHashMap<>();
+    Stream.concat(Stream.of(normalized.getPomArtifact()), normalized.getAllArtifacts().stream()).forEach(a ->
+        result.put(nullToEmpty(a.getClassifier()) + ":" + a.getExtension(), a.getFile()));
+    return result;
+  }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import ws.gross.gradle.utils.GradleUtils;
+
+import static ws.gross.gradle.utils.GradleUtils.parseList;
+import static ws.gross.gradle.utils.GradleUtils.parseMap;
+
+public class BootstrapManifest implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final String DESCRIPTION_KEY = "description";
+  public static final String VERSION_KEY = "version";
+  public static final String PLUGIN_IDS_KEY = "pluginIds";
+  public static final String PLUGIN_MODULES_KEY = "pluginModules";
+  public static final String CATALOG_IDS_KEY = "catalogIds";
+  public static final String CATALOG_CONTENT_KEY_PREFIX = "catalogContent.";
+
+  private final String description;
+  private final String version;
+  private final List<String> pluginIds;
+  private final Map<String, String> pluginModules;
+  private final Map<String, String> catalogIds;
+  private final Map<String, String> catalogContents;
+
+  public BootstrapManifest(
+      String description,
+      @Nullable String version,
+      List<String> pluginIds,
+      Map<String, String> pluginModules,
+      Map<String, String> catalogIds,
+      Map<String, String> catalogContents
+  ) {
+    this.description = description;
+    this.version = version;
+    this.pluginIds = Collections.unmodifiableList(pluginIds);
+    this.pluginModules = Collections.unmodifiableMap(new TreeMap<>(pluginModules));
+    this.catalogIds = Collections.unmodifiableMap(new LinkedHashMap<>(catalogIds));
+    this.catalogContents = Collections.unmodifiableMap(new TreeMap<>(catalogContents));
+  }
+
+  public static BootstrapManifest of(Properties props) {
+    Map<String, String> catalogContents = new TreeMap<>();
+    props.stringPropertyNames().stream()
+        .filter(k -> k.startsWith(CATALOG_CONTENT_KEY_PREFIX))
+        .forEach(k -> catalogContents.put(k.substring(CATALOG_CONTENT_KEY_PREFIX.length()), props.getProperty(k)));
+
+    return new BootstrapManifest(
+        props.getProperty(DESCRIPTION_KEY, ""),
+        props.getProperty(VERSION_KEY),
+        parseList(props.getProperty(PLUGIN_IDS_KEY)),
+        parseMap(props.getProperty(PLUGIN_MODULES_KEY)),
+        parseMap(props.getProperty(CATALOG_IDS_KEY)),
+        catalogContents
+    );
+  }
+
+  public static BootstrapManifest read(Path path) {
+    return of(GradleUtils.readProperties(path));
+  }
+
+  public Properties toProperties() {
+    Properties props = new Properties();
+    props.setProperty(DESCRIPTION_KEY, description);
+    if (version != null) {
+      props.setProperty(VERSION_KEY, version);
+    }
+    props.setProperty(PLUGIN_IDS_KEY, String.join(",", pluginIds));
+    if (!pluginModules.isEmpty()) {
+      props.setProperty(PLUGIN_MODULES_KEY, joinMap(pluginModules));
+    }
+    props.setProperty(CATALOG_IDS_KEY, joinMap(catalogIds));
+    catalogContents.forEach((alias, content) -> props.setProperty(CATALOG_CONTENT_KEY_PREFIX + alias, content));
+    return props;
+  }
+
+  // short digest of manifest content, changes when dynamic or snapshot version brings new content
+  public String digest() {
+    return String.format("%08x", new TreeMap<>(toProperties()).toString().hashCode());
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  @Nullable
+  public String getVersion() {
+    return version;
+  }
+
+  public List<String> getPluginIds() {
+    return pluginIds;
+  }
+
+  public Map<String, String> getPluginModules() {
+    return pluginModules;
+  }
+
+  public Map<String, String> getCatalogIds() {
+    return catalogIds;
+  }
+
+  public Map<String, String> getCatalogContents() {
+    return catalogContents;
+  }
+
+  private static String joinMap(Map<String, String> map) {
+    return map.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(","));
+  }
+}
@@ -33,6 +33,9 @@ public interface BootstrapManifestBuilder {
   // @Nonnull
   ListProperty<String> getPluginIds();
 
+  // @Nonnull
+  MapProperty<String, String> getPluginModules();
+
   // @Nonnull
   MapProperty<String, String> getCatalogs();
 
@@ -47,4 +50,6 @@ public interface BootstrapManifestBuilder {
   void catalog(String alias, String groupAndModule);
 
   void plugin(String pluginId);
+
+  void plugin(String pluginId, String groupAndModule);
 }
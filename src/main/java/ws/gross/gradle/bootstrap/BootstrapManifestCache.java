@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import ws.gross.gradle.utils.GradleUtils;
+
+import static ws.gross.gradle.utils.StringUtils.isNullOrEmpty;
+
+public class BootstrapManifestCache {
+  private static final Logger logger = Logging.getLogger(BootstrapManifestCache.class);
+
+  public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+
+  private static final String COORDINATES_KEY = "cache.coordinates";
+  private static final String CHECKSUM_KEY = "cache.checksum";
+  private static final String TIMESTAMP_KEY = "cache.timestamp";
+
+  private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^\\w.+,()\\[\\]-]");
+
+  // rich version constraints are never treated as static
+  private static final Pattern DYNAMIC_VERSION_PATTERN = Pattern.compile("[+\\[\\](),{]|^latest\\.|-SNAPSHOT$");
+
+  private final Path directory;
+  private final Duration ttl;
+  private final boolean refresh;
+  private final Clock clock;
+
+  @Nullable
+  private ParsedManifests parsedManifests;
+
+  public BootstrapManifestCache(Path directory, Duration ttl, boolean refresh) {
+    this(directory, ttl, refresh, Clock.systemUTC());
+  }
+
+  BootstrapManifestCache(Path directory, Duration ttl, boolean refresh, Clock clock) {
+    this.directory = directory;
+    this.ttl = ttl;
+    this.refresh = refresh;
+    this.clock = clock;
+  }
+
+  public void setParsedManifests(@Nullable ParsedManifests parsedManifests) {
+    this.parsedManifests = parsedManifests;
+  }
+
+  public static boolean isStatic(String version) {
+    return !isNullOrEmpty(version) && !DYNAMIC_VERSION_PATTERN.matcher(version).find();
+  }
+
+  // plain required version is kept as is, other parts of rich constraint are appended,
+  // so e.g. `strictly` and `prefer` of the same version are cached separately
+  public static String versionKey(VersionConstraint constraint) {
+    if (constraint.getStrictVersion().isEmpty() && constraint.getPreferredVersion().isEmpty()
+        && constraint.getRejectedVersions().isEmpty() && constraint.getBranch() == null) {
+      return constraint.getRequiredVersion();
+    }
+    return String.format("%s{strictly=%s;prefer=%s;reject=%s;branch=%s}",
+        constraint.getRequiredVersion(), constraint.getStrictVersion(), constraint.getPreferredVersion(),
+        String.join("|", constraint.getRejectedVersions()), constraint.getBranch());
+  }
+
+  public Optional<BootstrapManifest> lookup(String group, String module, String version) {
+    if (refresh) {
+      return Optional.empty();
+    }
+
+    String coordinates = coordinates(group, module, version);
+    return parsedEntry(coordinates).filter(entry -> {
+      if (isStatic(version)) {
+        return true;
+      }
+      return entry.timestamp.plus(ttl).isAfter(clock.instant());
+    }).map(entry -> {
+      logger.info("Bootstrap manifest {} found in cache", coordinates);
+      return entry.manifest;
+    });
+  }
+
+  public BootstrapManifest store(String group, String module, String version, Path artifact) {
+    String coordinates = coordinates(group, module, version);
+    String checksum = GradleUtils.checksum(artifact, "SHA-256");
+
+    Properties props = readEntry(coordinates)
+        .filter(p -> checksum.equals(p.getProperty(CHECKSUM_KEY)))
+        .orElse(null);
+    if (props == null) {
+      logger.info("Caching bootstrap manifest {} ({})", coordinates, checksum);
+      props = BootstrapManifest.read(artifact).toProperties();
+      props.setProperty(COORDINATES_KEY, coordinates);
+      props.setProperty(CHECKSUM_KEY, checksum);
+    }
+    props.setProperty(TIMESTAMP_KEY, Long.toString(clock.millis()));
+
+    GradleUtils.writeProperties(entryPath(coordinates), props);
+    return BootstrapManifest.of(props);
+  }
+
+  private Optional<Entry> parsedEntry(String coordinates) {
+    if (parsedManifests == null) {
+      return readEntry(coordinates).map(Entry::new);
+    }
+    return parsedManifests.get("cached-manifest", entryPath(coordinates), p -> readEntry(coordinates).map(Entry::new));
+  }
+
+  private Optional<Properties> readEntry(String coordinates) {
+    Path path = entryPath(coordinates);
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    try {
+      Properties props = GradleUtils.readProperties(path);
+      // guard against sanitized name clashes and truncated entries
+      if (!coordinates.equals(props.getProperty(COORDINATES_KEY)) || !props.containsKey(CHECKSUM_KEY)) {
+        return Optional.empty();
+      }
+      Long.parseLong(props.getProperty(TIMESTAMP_KEY));
+      return Optional.of(props);
+    } catch (GradleException | IllegalArgumentException e) {
+      logger.debug("Ignoring corrupted bootstrap manifest cache entry {}", path, e);
+      return Optional.empty();
+    }
+  }
+
+  private Path entryPath(String coordinates) {
+    String[] parts = coordinates.split(":", 3);
+    return directory.resolve(parts[0]).resolve(parts[1])
+        .resolve(UNSAFE_FILE_NAME_CHARS.matcher(parts[2]).replaceAll("_") + ".properties");
+  }
+
+  private static String coordinates(String group, String module, String version) {
+    return group + ":" + module + ":" + version;
+  }
+
+  private static class Entry {
+    private final Instant timestamp;
+    private final BootstrapManifest manifest;
+
+    Entry(Properties props) {
+      this.timestamp = Instant.ofEpochMilli(Long.parseLong(props.getProperty(TIMESTAMP_KEY)));
+      this.manifest = BootstrapManifest.of(props);
+    }
+  }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ExternalDependency;
+import org.gradle.api.artifacts.MutableVersionConstraint;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.internal.artifacts.DependencyResolutionServices;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.model.ObjectFactory;
+import ws.gross.gradle.utils.PhaseTracer;
+
+import static ws.gross.gradle.utils.StringUtils.toUpperCamelCase;
+
+@SuppressWarnings("CodeBlock2Expr")
+public class BootstrapManifestResolver {
+  private static final Logger logger = Logging.getLogger(BootstrapManifestResolver.class);
+
+  public static final String BATCH_CONFIGURATION_NAME = "incomingBootstrapManifests";
+
+  private final ObjectFactory objectFactory;
+
+  private final Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier;
+
+  private final PhaseTracer tracer;
+
+  private final Map<DefaultBootstrapManifestBuilder, Dependency> pending = new LinkedHashMap<>();
+
+  private boolean batched = false;
+
+  private int cacheHits = 0;
+
+  private int cacheMisses = 0;
+
+  private final Map<String, String> resolved = new TreeMap<>();
+
+  private final Map<DefaultBootstrapManifestBuilder, Dependency> lastKnownGoodCatalogs = new LinkedHashMap<>();
+
+  @Nullable
+  private BootstrapManifestCache cache;
+
+  @Nullable
+  private LastKnownGoodManifests lastKnownGood;
+
+  @Nullable
+  private ParsedManifests parsedManifests;
+
+  // set after the first failed resolution, the rest of manifests are taken from last known good snapshots
+  private boolean degraded = false;
+
+  @Inject
+  public BootstrapManifestResolver(
+      ObjectFactory objectFactory,
+      Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier,
+      PhaseTracer tracer
+  ) {
+    this.objectFactory = objectFactory;
+    this.dependencyResolutionServicesSupplier = dependencyResolutionServicesSupplier;
+    this.tracer = tracer;
+  }
+
+  public boolean isBatched() {
+    return batched;
+  }
+
+  public void setBatched(boolean batched) {
+    this.batched = batched;
+  }
+
+  @Nullable
+  public BootstrapManifestCache getCache() {
+    return cache;
+  }
+
+  public void setCache(@Nullable BootstrapManifestCache cache) {
+    this.cache = cache;
+  }
+
+  @Nullable
+  public LastKnownGoodManifests getLastKnownGood() {
+    return lastKnownGood;
+  }
+
+  public void setLastKnownGood(@Nullable LastKnownGoodManifests lastKnownGood) {
+    this.lastKnownGood = lastKnownGood;
+  }
+
+  @Nullable
+  public ParsedManifests getParsedManifests() {
+    return parsedManifests;
+  }
+
+  public void setParsedManifests(@Nullable ParsedManifests parsedManifests) {
+    this.parsedManifests = parsedManifests;
+  }
+
+  public boolean isDegraded() {
+    return degraded;
+  }
+
+  public int getCacheHits() {
+    return cacheHits;
+  }
+
+  public int getCacheMisses() {
+    return cacheMisses;
+  }
+
+  // manifest name to coordinates of applied manifest with its content digest,
+  // so new content of dynamic or snapshot versions is visible too
+  public Map<String, String> getResolved() {
+    return new TreeMap<>(resolved);
+  }
+
+  public void request(
+      DefaultBootstrapManifestBuilder builder,
+      Object dependencyNotation,
+      Action<? super MutableVersionConstraint> versionSpec
+  ) {
+    tracer.trace("bootstrapManifest:" + builder.getName(), () -> doRequest(builder, dependencyNotation, versionSpec));
+  }
+
+  private void doRequest(
+      DefaultBootstrapManifestBuilder builder,
+      Object dependencyNotation,
+      Action<? super MutableVersionConstraint> versionSpec
+  ) {
+    Dependency dep = dependencyResolutionServicesSupplier.get().getDependencyHandler().create(dependencyNotation);
+    if (dep instanceof ExternalDependency) {
+      ((ExternalDependency) dep).version(versionSpec);
+    }
+
+    if (cache != null && isCacheable(dep)) {
+      //noinspection DataFlowIssue
+      BootstrapManifest cached = cache.lookup(dep.getGroup(), dep.getName(), versionKey(dep)).orElse(null);
+      if (cached != null) {
+        logger.info("Using cached bootstrap manifest {} for {}", coordinates(dep), builder.getName());
+        cacheHits++;
+        applyResolved(builder, dep, cached);
+        return;
+      }
+      cacheMisses++;
+    }
+
+    if (degraded) {
+      applyFallback(builder, dep, null);
+    } else if (batched) {
+      logger.info("Deferring bootstrap manifest {} resolution", builder.getName());
+      pending.put(builder, dep);
+    } else {
+      resolveOrFallback(builder, dep);
+    }
+  }
+
+  public void resolvePending() {
+    // requests made after this point are resolved eagerly
+    batched = false;
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    tracer.trace("bootstrapManifests:batch", this::doResolvePending);
+  }
+
+  private void doResolvePending() {
+    Map<DefaultBootstrapManifestBuilder, Dependency> batch = new LinkedHashMap<>();
+    Map<DefaultBootstrapManifestBuilder, Dependency> separate = new LinkedHashMap<>();
+    Set<String> modules = new HashSet<>();
+    pending.forEach((builder, dep) -> {
+      // same module with different versions would be collapsed by conflict resolution
+      if (dep instanceof ExternalDependency && modules.add(moduleKey(dep))) {
+        batch.put(builder, dep);
+      } else {
+        separate.put(builder, dep);
+      }
+    });
+    pending.clear();
+
+    if (!batch.isEmpty()) {
+      logger.info("Resolving {} bootstrap manifests in a single batch", batch.size());
+      Configuration cnf = createConfiguration(BATCH_CONFIGURATION_NAME);
+      cnf.getDependencies().addAll(batch.values());
+
+      Map<String, File> files = new HashMap<>();
+      try {
+        cnf.getIncoming().getArtifacts().getArtifacts().forEach(ar -> {
+          ComponentIdentifier id = ar.getId().getComponentIdentifier();
+          if (id instanceof ModuleComponentIdentifier) {
+            ModuleComponentIdentifier mid = (ModuleComponentIdentifier) id;
+            files.put(mid.getGroup() + ":" + mid.getModule(), checkExists(ar));
+          }
+        });
+      } catch (GradleException e) {
+        batch.forEach((builder, dep) -> applyFallback(builder, dep, e));
+        batch.clear();
+      }
+
+      batch.forEach((builder, dep) -> {
+        File file = files.get(moduleKey(dep));
+        if (file == null) {
+          throw new GradleException(String.format("Import of external bootstrap manifest %s failed: no artifact resolved for %s",
+              builder.getName(), moduleKey(dep)));
+        }
+        applyResolved(builder, dep, load(dep, file));
+      });
+    }
+
+    separate.forEach((builder, dep) -> {
+      if (degraded) {
+        applyFallback(builder, dep, null);
+      } else {
+        resolveOrFallback(builder, dep);
+      }
+    });
+  }
+
+  private void resolveOrFallback(DefaultBootstrapManifestBuilder builder, Dependency dep) {
+    BootstrapManifest manifest;
+    try {
+      manifest = resolve(builder.getName(), dep);
+    } catch (GradleException e) {
+      applyFallback(builder, dep, e);
+      return;
+    }
+    applyResolved(builder, dep, manifest);
+  }
+
+  private void applyResolved(DefaultBootstrapManifestBuilder builder, Dependency dep, BootstrapManifest manifest) {
+    apply(builder, dep, manifest);
+    if (lastKnownGood != null && isCacheable(dep)) {
+      rememberLastKnownGood(lastKnownGood, builder, dep, manifest);
+    }
+  }
+
+  // Catalogs aren't resolved here, their contents are added by completeLastKnownGood once Gradle resolved them
+  private void rememberLastKnownGood(LastKnownGoodManifests lkg, DefaultBootstrapManifestBuilder builder, Dependency dep,
+      BootstrapManifest manifest) {
+    Optional<LastKnownGoodManifests.Entry> current = lkg.lookup(dep.getGroup(), dep.getName());
+    boolean sameCoordinates = current.isPresent() && current.get().getCoordinates().equals(coordinates(dep));
+    if (sameCoordinates && current.get().isComplete()) {
+      return;
+    }
+
+    if (!sameCoordinates) {
+      logger.info("Saving last known good bootstrap manifest {}", coordinates(dep));
+      //noinspection DataFlowIssue
+      lkg.store(dep.getGroup(), dep.getName(), dep.getVersion(), manifest, Collections.emptyMap());
+    }
+    if (!degraded) {
+      lastKnownGoodCatalogs.put(builder, dep);
+    }
+  }
+
+  // Adds catalog contents to last known good snapshots saved during this build. Called after manifests are applied,
+  // so catalogs are already resolved by Gradle and catalogContent is expected to hit the module cache.
+  public void completeLastKnownGood(Function<String, Optional<String>> catalogContent) {
+    if (lastKnownGood == null || lastKnownGoodCatalogs.isEmpty()) {
+      return;
+    }
+
+    lastKnownGoodCatalogs.forEach((builder, dep) -> {
+      //noinspection DataFlowIssue
+      LastKnownGoodManifests.Entry entry = lastKnownGood.lookup(dep.getGroup(), dep.getName())
+          .filter(e -> e.getCoordinates().equals(coordinates(dep)))
+          .orElse(null);
+      if (entry == null || entry.isComplete()) {
+        return;
+      }
+
+      // catalogs are added with the version of the manifest builder, see BootstrapManifestAction
+      VersionConstraint version = builder.getVersion().getOrNull();
+      String requiredVersion = version == null ? null : version.getRequiredVersion();
+      if (requiredVersion == null || requiredVersion.isEmpty()) {
+        logger.info("Catalogs of bootstrap manifest {} are not saved as last known good: no version", moduleKey(dep));
+        return;
+      }
+
+      BootstrapManifest manifest = entry.getManifest();
+      Map<String, String> catalogs = builder.getCatalogs().getOrElse(Collections.emptyMap());
+      Map<String, String> catalogContents = new TreeMap<>();
+      manifest.getCatalogIds().forEach((alias, notation) -> {
+        // catalog replaced in settings isn't the one of the manifest
+        if (manifest.getCatalogContents().containsKey(alias) || !notation.equals(catalogs.get(alias))) {
+          return;
+        }
+        catalogContent.apply(notation + ":" + requiredVersion).ifPresent(content -> catalogContents.put(alias, content));
+      });
+
+      if (!catalogContents.isEmpty()) {
+        logger.info("Saving catalogs {} of last known good bootstrap manifest {}", catalogContents.keySet(), coordinates(dep));
+        //noinspection DataFlowIssue
+        lastKnownGood.store(dep.getGroup(), dep.getName(), dep.getVersion(), manifest, catalogContents);
+      }
+    });
+    lastKnownGoodCatalogs.clear();
+  }
+
+  private void applyFallback(DefaultBootstrapManifestBuilder builder, Dependency dep, @Nullable GradleException failure) {
+    apply(builder, dep, fallback(builder.getName(), dep, failure));
+  }
+
+  private void apply(DefaultBootstrapManifestBuilder builder, Dependency dep, BootstrapManifest manifest) {
+    builder.apply(manifest);
+    String version = manifest.getVersion() != null ? manifest.getVersion() : dep.getVersion();
+    resolved.put(builder.getName(), moduleKey(dep) + ":" + version + "#" + manifest.digest());
+  }
+
+  private BootstrapManifest fallback(String name, Dependency dep, @Nullable GradleException failure) {
+    Optional<LastKnownGoodManifests.Entry> entry = lastKnownGood == null || dep.getGroup() == null ? Optional.empty()
+        : lastKnownGood.lookup(dep.getGroup(), dep.getName());
+    if (!entry.isPresent()) {
+      if (failure != null) {
+        throw failure;
+      }
+      throw new GradleException(String.format("Import of external bootstrap manifest %s failed: "
+                                              + "earlier manifest resolution failed and there is no last known good %s",
+          name, moduleKey(dep)));
+    }
+
+    if (!degraded && failure != null) {
+      degraded = true;
+      logger.warn("Bootstrap manifest resolution failed, last known good manifests are used for the rest of the build: {}",
+          failure.getMessage());
+    }
+    logger.warn("Using last known good bootstrap manifest {} for {} instead of {}",
+        entry.get().getCoordinates(), name, coordinates(dep));
+    return entry.get().getManifest();
+  }
+
+  public BootstrapManifest resolve(String name, Dependency dependency) {
+    Configuration cnf = createConfiguration("incomingBootstrapManifestFor" + toUpperCamelCase(name));
+    cnf.getDependencies().add(dependency);
+
+    Set<ResolvedArtifactResult> artifacts = cnf.getIncoming().getArtifacts().getArtifacts();
+    if (artifacts.size() != 1) {
+      throw new GradleException(String.format("Import of external bootstrap manifest %s failed: expected single artifact, got %d",
+          name, artifacts.size()));
+    }
+
+    return load(dependency, checkExists(artifacts.iterator().next()));
+  }
+
+  private BootstrapManifest load(Dependency dependency, File file) {
+    if (cache != null && isCacheable(dependency)) {
+      //noinspection DataFlowIssue
+      return cache.store(dependency.getGroup(), dependency.getName(), versionKey(dependency), file.toPath());
+    }
+    // module cache path contains artifact checksum, so parsed manifest is reused until artifact changes
+    return parsedManifests == null ? BootstrapManifest.read(file.toPath())
+        : parsedManifests.get("manifest", file.toPath(), BootstrapManifest::read);
+  }
+
+  private Configuration createConfiguration(String name) {
+    return dependencyResolutionServicesSupplier.get().getConfigurationContainer().create(name, c -> {
+      c.getResolutionStrategy().activateDependencyLocking();
+      c.setCanBeConsumed(false);
+      c.setCanBeResolved(true);
+      c.attributes(a -> {
+        a.attribute(Category.CATEGORY_ATTRIBUTE, objectFactory.named(Category.class, "manifest"));
+      });
+    });
+  }
+
+  private static File checkExists(ResolvedArtifactResult ar) {
+    if (!ar.getFile().exists()) {
+      throw new GradleException(String.format("Import of external bootstrap manifest failed: %s doesn't exist", ar.getFile()));
+    }
+    return ar.getFile();
+  }
+
+  private static boolean isCacheable(Dependency dep) {
+    return dep instanceof ExternalDependency && dep.getGroup() != null && dep.getVersion() != null;
+  }
+
+  private static String versionKey(Dependency dep) {
+    return BootstrapManifestCache.versionKey(((ExternalDependency) dep).getVersionConstraint());
+  }
+
+  private static String moduleKey(Dependency dep) {
+    return dep.getGroup() + ":" + dep.getName();
+  }
+
+  private static String coordinates(Dependency dep) {
+    return moduleKey(dep) + ":" + dep.getVersion();
+  }
+}
@@ -16,20 +16,16 @@
 
 package ws.gross.gradle.bootstrap;
 
-import java.util.Properties;
-import java.util.function.Supplier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.gradle.api.Action;
-import org.gradle.api.GradleException;
-import org.gradle.api.artifacts.Configuration;
-import org.gradle.api.artifacts.Dependency;
-import org.gradle.api.artifacts.ExternalDependency;
 import org.gradle.api.artifacts.MutableVersionConstraint;
 import org.gradle.api.artifacts.VersionConstraint;
-import org.gradle.api.attributes.Category;
-import org.gradle.api.internal.artifacts.DependencyResolutionServices;
 import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
@@ -37,37 +33,41 @@ import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import ws.gross.gradle.utils.GradleUtils;
 
-import static ws.gross.gradle.utils.GradleUtils.parseList;
-import static ws.gross.gradle.utils.GradleUtils.parseMap;
-import static ws.gross.gradle.utils.StringUtils.toUpperCamelCase;
-
-@SuppressWarnings("CodeBlock2Expr")
 public class DefaultBootstrapManifestBuilder implements NamedBootstrapManifestBuilder {
   private final String name;
 
   private final Property<String> description;
   private final Property<VersionConstraint> version;
   private final ListProperty<String> pluginIds;
+  private final MapProperty<String, String> pluginModules;
   private final MapProperty<String, String> catalogs;
+  private final MapProperty<String, String> catalogContents;
 
-  private final ObjectFactory objectFactory;
+  private final BootstrapManifestResolver resolver;
 
-  private final Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier;
+  // values at the time of `from`, anything changed after it is kept when manifest is applied later
+  @Nullable
+  private String requestedDescription;
+  @Nullable
+  private VersionConstraint requestedVersion;
+  private Map<String, String> requestedCatalogs = Collections.emptyMap();
+  private Map<String, String> requestedPluginModules = Collections.emptyMap();
 
   @Inject
   public DefaultBootstrapManifestBuilder(
       String name,
       ObjectFactory objectFactory,
-      Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier
+      BootstrapManifestResolver resolver
   ) {
     this.name = name;
-    this.objectFactory = objectFactory;
-    this.dependencyResolutionServicesSupplier = dependencyResolutionServicesSupplier;
+    this.resolver = resolver;
 
     description = objectFactory.property(String.class);
     version = objectFactory.property(VersionConstraint.class);
     pluginIds = objectFactory.listProperty(String.class);
+    pluginModules = objectFactory.mapProperty(String.class, String.class);
     catalogs = objectFactory.mapProperty(String.class, String.class);
+    catalogContents = objectFactory.mapProperty(String.class, String.class);
   }
 
   @Override
@@ -90,11 +90,20 @@ public class DefaultBootstrapManifestBuilder implements NamedBootstrapManifestBu
     return pluginIds;
   }
 
+  @Override
+  public MapProperty<String, String> getPluginModules() {
+    return pluginModules;
+  }
+
   @Override
   public MapProperty<String, String> getCatalogs() {
     return catalogs;
   }
 
+  public MapProperty<String, String> getCatalogContents() {
+    return catalogContents;
+  }
+
   @Override
   public void from(Object dependencyNotation) {
     from(dependencyNotation, GradleUtils.doNothing());
@@ -102,35 +111,35 @@ public class DefaultBootstrapManifestBuilder implements NamedBootstrapManifestBu
 
   @Override
   public void from(Object dependencyNotation, Action<? super MutableVersionConstraint> versionSpec) {
-    DependencyResolutionServices drs = dependencyResolutionServicesSupplier.get();
-
-    String configurationName = "incomingBootstrapManifestFor" + toUpperCamelCase(name);
-    Configuration cnf = drs.getConfigurationContainer().create(configurationName, c -> {
-      c.getResolutionStrategy().activateDependencyLocking();
-      c.setCanBeConsumed(false);
-      c.setCanBeResolved(true);
-      c.attributes(a -> {
-        a.attribute(Category.CATEGORY_ATTRIBUTE, objectFactory.named(Category.class, "manifest"));
-      });
-    });
+    requestedDescription = description.getOrNull();
+    requestedVersion = version.getOrNull();
+    requestedCatalogs = catalogs.getOrElse(Collections.emptyMap());
+    requestedPluginModules = pluginModules.getOrElse(Collections.emptyMap());
+    resolver.request(this, dependencyNotation, versionSpec);
+  }
 
-    Dependency dep = drs.getDependencyHandler().create(dependencyNotation);
-    if (dep instanceof ExternalDependency) {
-      ((ExternalDependency) dep).version(versionSpec);
+  // Batched manifests are applied after settings script, so values set after `from`
+  // are kept to win over the manifest the same way as with eager resolution
+  public void apply(BootstrapManifest manifest) {
+    if (description.getOrNull() == requestedDescription) {
+      description.set(manifest.getDescription());
     }
-
-    cnf.getDependencies().add(dep);
-
-    cnf.getIncoming().getArtifacts().getArtifacts().forEach(ar -> {
-      if (!ar.getFile().exists()) {
-        throw new GradleException(String.format("Import of external bootstrap manifest failed: %s doesn't exist", ar.getFile()));
+    if (version.getOrNull() == requestedVersion) {
+      version(manifest.getVersion());
+    }
+    Map<String, String> currentCatalogs = catalogs.getOrElse(Collections.emptyMap());
+    manifest.getCatalogIds().forEach((alias, module) -> {
+      if (Objects.equals(currentCatalogs.get(alias), requestedCatalogs.get(alias))) {
+        catalog(alias, module);
+      }
+    });
+    catalogContents.putAll(manifest.getCatalogContents());
+    manifest.getPluginIds().forEach(this::plugin);
+    Map<String, String> currentPluginModules = pluginModules.getOrElse(Collections.emptyMap());
+    manifest.getPluginModules().forEach((pluginId, module) -> {
+      if (Objects.equals(currentPluginModules.get(pluginId), requestedPluginModules.get(pluginId))) {
+        pluginModules.put(pluginId, module);
       }
-
-      Properties props = GradleUtils.readProperties(ar.getFile().toPath());
-      description.set(props.getProperty("description", ""));
-      version(props.getProperty("version"));
-      parseMap(props.getProperty("catalogIds")).forEach(this::catalog);
-      parseList(props.getProperty("pluginIds")).forEach(this::plugin);
     });
   }
 
@@ -155,4 +164,10 @@ public class DefaultBootstrapManifestBuilder implements NamedBootstrapManifestBu
   public void plugin(String pluginId) {
     pluginIds.add(pluginId);
   }
+
+  @Override
+  public void plugin(String pluginId, String groupAndModule) {
+    plugin(pluginId);
+    pluginModules.put(pluginId, groupAndModule);
+  }
 }
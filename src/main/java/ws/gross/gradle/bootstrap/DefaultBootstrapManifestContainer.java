@@ -16,13 +16,10 @@
 
 package ws.gross.gradle.bootstrap;
 
-import java.util.function.Supplier;
-
 import javax.inject.Inject;
 
 import org.gradle.api.internal.AbstractNamedDomainObjectContainer;
 import org.gradle.api.internal.CollectionCallbackActionDecorator;
-import org.gradle.api.internal.artifacts.DependencyResolutionServices;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.reflect.TypeOf;
 import org.gradle.internal.reflect.Instantiator;
@@ -32,13 +29,13 @@ public class DefaultBootstrapManifestContainer
     implements BootstrapManifestContainer {
   private final ObjectFactory objectFactory;
 
-  private final Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier;
+  private final BootstrapManifestResolver resolver;
 
   @Inject
   public DefaultBootstrapManifestContainer(
       Instantiator instantiator,
       ObjectFactory objectFactory,
-      Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier
+      BootstrapManifestResolver resolver
   ) {
     super(
         NamedBootstrapManifestBuilder.class,
@@ -47,7 +44,7 @@ public class DefaultBootstrapManifestContainer
     );
 
     this.objectFactory = objectFactory;
-    this.dependencyResolutionServicesSupplier = dependencyResolutionServicesSupplier;
+    this.resolver = resolver;
   }
 
   @Override
@@ -57,6 +54,6 @@ public class DefaultBootstrapManifestContainer
 
   @Override
   protected NamedBootstrapManifestBuilder doCreate(String name) {
-    return objectFactory.newInstance(DefaultBootstrapManifestBuilder.class, name, dependencyResolutionServicesSupplier);
+    return objectFactory.newInstance(DefaultBootstrapManifestBuilder.class, name, resolver);
   }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import ws.gross.gradle.utils.GradleUtils;
+
+// Last successfully resolved manifest of each module with contents of its catalogs,
+// used when nexus is unreachable or the manifest is missing from the module cache in offline mode
+public class LastKnownGoodManifests {
+  private static final Logger logger = Logging.getLogger(LastKnownGoodManifests.class);
+
+  public static final String LAST_KNOWN_GOOD_PATH = "caches/private-repo/last-known-good";
+
+  private static final String COORDINATES_KEY = "lkg.coordinates";
+
+  private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^\\w.-]");
+
+  private final Path directory;
+
+  @Nullable
+  private ParsedManifests parsedManifests;
+
+  public LastKnownGoodManifests(Path directory) {
+    this.directory = directory;
+  }
+
+  public void setParsedManifests(@Nullable ParsedManifests parsedManifests) {
+    this.parsedManifests = parsedManifests;
+  }
+
+  public Optional<Entry> lookup(String group, String module) {
+    Path path = entryPath(group, module);
+    return parsedManifests == null ? read(path, group, module)
+        : parsedManifests.get("last-known-good", path, p -> read(p, group, module));
+  }
+
+  private Optional<Entry> read(Path path, String group, String module) {
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    try {
+      Properties props = GradleUtils.readProperties(path);
+      String coordinates = props.getProperty(COORDINATES_KEY);
+      if (coordinates == null || !coordinates.startsWith(group + ":" + module + ":")) {
+        return Optional.empty();
+      }
+      return Optional.of(new Entry(coordinates, BootstrapManifest.of(props)));
+    } catch (GradleException | IllegalArgumentException e) {
+      logger.debug("Ignoring corrupted last known good manifest {}", path, e);
+      return Optional.empty();
+    }
+  }
+
+  // catalogs are stored inline, so they are applied from the snapshot too
+  public void store(String group, String module, String version, BootstrapManifest manifest, Map<String, String> catalogContents) {
+    Map<String, String> contents = new TreeMap<>(catalogContents);
+    contents.putAll(manifest.getCatalogContents());
+
+    Properties props = new BootstrapManifest(
+        manifest.getDescription(),
+        manifest.getVersion(),
+        manifest.getPluginIds(),
+        manifest.getPluginModules(),
+        manifest.getCatalogIds(),
+        contents
+    ).toProperties();
+    props.setProperty(COORDINATES_KEY, group + ":" + module + ":" + version);
+    GradleUtils.writeProperties(entryPath(group, module), props);
+  }
+
+  private Path entryPath(String group, String module) {
+    return directory.resolve(UNSAFE_FILE_NAME_CHARS.matcher(group).replaceAll("_"))
+        .resolve(UNSAFE_FILE_NAME_CHARS.matcher(module).replaceAll("_") + ".properties");
+  }
+
+  public static class Entry {
+    private final String coordinates;
+    private final BootstrapManifest manifest;
+
+    Entry(String coordinates, BootstrapManifest manifest) {
+      this.coordinates = coordinates;
+      this.manifest = manifest;
+    }
+
+    public String getCoordinates() {
+      return coordinates;
+    }
+
+    public BootstrapManifest getManifest() {
+      return manifest;
+    }
+
+    // every catalog has its content in the snapshot
+    public boolean isComplete() {
+      return manifest.getCatalogContents().keySet().containsAll(manifest.getCatalogIds().keySet());
+    }
+  }
+}
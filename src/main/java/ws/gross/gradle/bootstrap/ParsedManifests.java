@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+// Parsed manifest files kept in memory while the daemon reuses plugin classloader,
+// entries are revalidated by file attributes, so rewritten or replaced files are parsed again
+public class ParsedManifests {
+  private static final Logger logger = Logging.getLogger(ParsedManifests.class);
+
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private static final ParsedManifests SHARED = new ParsedManifests(DEFAULT_MAX_ENTRIES);
+
+  private final Map<String, ParsedManifest> entries;
+
+  private int hits = 0;
+
+  private int misses = 0;
+
+  public ParsedManifests(int maxEntries) {
+    this.entries = new LinkedHashMap<String, ParsedManifest>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ParsedManifest> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  // lives as long as the plugin classes, i.e. across builds in a warm daemon
+  public static ParsedManifests shared() {
+    return SHARED;
+  }
+
+  // kind separates values parsed from the same file by different parsers, parsed values must be immutable
+  @SuppressWarnings("unchecked")
+  public <T> T get(String kind, Path path, Function<Path, T> parser) {
+    String key = kind + ":" + path.toAbsolutePath().normalize();
+    String stamp = stamp(path);
+    if (stamp == null) {
+      // missing or unreadable files are handled by the parser
+      return parser.apply(path);
+    }
+
+    synchronized (this) {
+      ParsedManifest entry = entries.get(key);
+      if (entry != null && entry.stamp.equals(stamp)) {
+        hits++;
+        logger.debug("Using parsed {} {} from memory", kind, path);
+        return (T) entry.value;
+      }
+      misses++;
+    }
+
+    T value = parser.apply(path);
+    synchronized (this) {
+      entries.put(key, new ParsedManifest(stamp, value));
+    }
+    return value;
+  }
+
+  public synchronized int getHits() {
+    return hits;
+  }
+
+  public synchronized int getMisses() {
+    return misses;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  // file key (inode on unix) changes on atomic replace even if size and mtime happen to match
+  private static String stamp(Path path) {
+    try {
+      BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+      if (!attrs.isRegularFile()) {
+        return null;
+      }
+      return attrs.size() + "/" + attrs.lastModifiedTime() + "/" + Objects.toString(attrs.fileKey(), "");
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static class ParsedManifest {
+    private final String stamp;
+    private final Object value;
+
+    ParsedManifest(String stamp, Object value) {
+      this.stamp = stamp;
+      this.value = value;
+    }
+  }
+}
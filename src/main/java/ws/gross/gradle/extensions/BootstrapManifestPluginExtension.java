@@ -16,9 +16,21 @@
 
 package ws.gross.gradle.extensions;
 
+import java.io.File;
+
 import org.gradle.api.Action;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Provider;
 import ws.gross.gradle.bootstrap.BootstrapManifestBuilder;
 
 public interface BootstrapManifestPluginExtension {
   void bootstrapManifest(Action<? super BootstrapManifestBuilder> spec);
+
+  // TOML files embedded into the manifest, keyed by catalog alias
+  MapProperty<String, RegularFile> getInlineCatalogs();
+
+  void inlineCatalog(String alias, Provider<? extends RegularFile> tomlFile);
+
+  void inlineCatalog(String alias, File tomlFile);
 }
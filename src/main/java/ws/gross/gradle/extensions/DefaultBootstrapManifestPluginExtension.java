@@ -16,30 +16,44 @@
 
 package ws.gross.gradle.extensions;
 
+import java.io.File;
 import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 
 import org.gradle.api.Action;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.internal.artifacts.DependencyResolutionServices;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Provider;
 import ws.gross.gradle.bootstrap.BootstrapManifestBuilder;
+import ws.gross.gradle.bootstrap.BootstrapManifestResolver;
 import ws.gross.gradle.bootstrap.DefaultBootstrapManifestBuilder;
 import ws.gross.gradle.bootstrap.NamedBootstrapManifestBuilder;
 
 public class DefaultBootstrapManifestPluginExtension implements BootstrapManifestPluginExtension {
   private final DefaultBootstrapManifestBuilder bootstrapManifestBuilder;
 
+  private final MapProperty<String, RegularFile> inlineCatalogs;
+
+  private final ProjectLayout layout;
+
   @Inject
   public DefaultBootstrapManifestPluginExtension(
       @Nonnull ObjectFactory objectFactory,
+      @Nonnull ProjectLayout layout,
       @Nonnull Supplier<? extends DependencyResolutionServices> dependencyResolutionServicesSupplier
   ) {
+    this.layout = layout;
+    inlineCatalogs = objectFactory.mapProperty(String.class, RegularFile.class);
+
     bootstrapManifestBuilder = objectFactory.newInstance(
         DefaultBootstrapManifestBuilder.class,
         "manifest",
-        dependencyResolutionServicesSupplier
+        objectFactory.newInstance(BootstrapManifestResolver.class, dependencyResolutionServicesSupplier)
     );
   }
 
@@ -48,6 +62,21 @@ public class DefaultBootstrapManifestPluginExtension implements BootstrapManifes
     spec.execute(bootstrapManifestBuilder);
   }
 
+  @Override
+  public MapProperty<String, RegularFile> getInlineCatalogs() {
+    return inlineCatalogs;
+  }
+
+  @Override
+  public void inlineCatalog(@Nonnull String alias, @Nonnull Provider<? extends RegularFile> tomlFile) {
+    inlineCatalogs.put(alias, tomlFile);
+  }
+
+  @Override
+  public void inlineCatalog(@Nonnull String alias, @Nonnull File tomlFile) {
+    inlineCatalogs.put(alias, layout.getProjectDirectory().file(tomlFile.getPath()));
+  }
+
   public NamedBootstrapManifestBuilder getBootstrapManifest() {
     return bootstrapManifestBuilder;
   }
@@ -26,19 +26,60 @@ import org.gradle.api.internal.artifacts.DependencyResolutionServices;
 import org.gradle.api.model.ObjectFactory;
 import org.jetbrains.annotations.NotNull;
 import ws.gross.gradle.bootstrap.BootstrapManifestContainer;
+import ws.gross.gradle.bootstrap.BootstrapManifestResolver;
 import ws.gross.gradle.bootstrap.DefaultBootstrapManifestContainer;
+import ws.gross.gradle.utils.PhaseTracer;
+import ws.gross.gradle.utils.PrivateRepoSettings;
 
 public class DefaultPrivateRepoExtension implements PrivateRepoExtension {
+  private final Supplier<DependencyResolutionServices> dependencyResolutionServicesSupplier;
+
+  private final PrivateRepoSettings privateRepoSettings;
+
+  private final PhaseTracer tracer;
+
+  private final BootstrapManifestResolver manifestResolver;
+
   private final DefaultBootstrapManifestContainer manifestContainer;
 
   @Inject
-  public DefaultPrivateRepoExtension(ObjectFactory objectFactory, Supplier<DependencyResolutionServices> dependencyResolutionServicesSupplier) {
+  public DefaultPrivateRepoExtension(
+      ObjectFactory objectFactory,
+      Supplier<DependencyResolutionServices> dependencyResolutionServicesSupplier,
+      PrivateRepoSettings privateRepoSettings,
+      PhaseTracer tracer
+  ) {
+    this.dependencyResolutionServicesSupplier = dependencyResolutionServicesSupplier;
+    this.privateRepoSettings = privateRepoSettings;
+    this.tracer = tracer;
+    manifestResolver = objectFactory.newInstance(
+        BootstrapManifestResolver.class,
+        dependencyResolutionServicesSupplier,
+        tracer
+    );
     manifestContainer = objectFactory.newInstance(
         DefaultBootstrapManifestContainer.class,
-        dependencyResolutionServicesSupplier
+        manifestResolver
     );
   }
 
+  // resolution services of settings, i.e. with pluginManagement repositories
+  public DependencyResolutionServices getDependencyResolutionServices() {
+    return dependencyResolutionServicesSupplier.get();
+  }
+
+  public PrivateRepoSettings getPrivateRepoSettings() {
+    return privateRepoSettings;
+  }
+
+  public PhaseTracer getTracer() {
+    return tracer;
+  }
+
+  public BootstrapManifestResolver getManifestResolver() {
+    return manifestResolver;
+  }
+
   @NotNull
   @Override
   public BootstrapManifestContainer getManifests() {
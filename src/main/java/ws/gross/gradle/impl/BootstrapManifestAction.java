@@ -16,26 +16,47 @@
 
 package ws.gross.gradle.impl;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.model.ObjectFactory;
+import ws.gross.gradle.bootstrap.DefaultBootstrapManifestBuilder;
 import ws.gross.gradle.bootstrap.NamedBootstrapManifestBuilder;
+import ws.gross.gradle.extensions.DefaultPrivateRepoExtension;
 import ws.gross.gradle.extensions.PrivateRepoExtension;
 
 @SuppressWarnings("CodeBlock2Expr")
 public class BootstrapManifestAction implements Action<Settings> {
   private static final Logger logger = Logging.getLogger(BootstrapManifestAction.class);
 
+  public static final String INLINE_CATALOGS_PATH = ".gradle/private-repo/catalogs";
+
   private final String name;
 
-  public BootstrapManifestAction(String name) {
+  private final ObjectFactory objectFactory;
+
+  public BootstrapManifestAction(String name, ObjectFactory objectFactory) {
     this.name = name;
+    this.objectFactory = objectFactory;
   }
 
   @Override
   public void execute(Settings settings) {
     PrivateRepoExtension ext = settings.getExtensions().getByType(PrivateRepoExtension.class);
+    ((DefaultPrivateRepoExtension) ext).getTracer().trace("applyBootstrapManifest:" + name, () -> apply(settings, ext));
+  }
+
+  private void apply(Settings settings, PrivateRepoExtension ext) {
     NamedBootstrapManifestBuilder manifest = ext.getManifests().getByName(name);
     logger.info("Adding bootstrap manifest {}{}", name,
         manifest.getDescription().map(d -> ": " + d).getOrElse(""));
@@ -49,9 +70,35 @@ public class BootstrapManifestAction implements Action<Settings> {
       });
     });
 
+    Map<String, String> pluginModules = manifest.getPluginModules().get();
+    if (!pluginModules.isEmpty()) {
+      settings.getPluginManagement().getResolutionStrategy().eachPlugin(d -> {
+        String module = pluginModules.get(d.getRequested().getId().getId());
+        String requestedVersion = d.getRequested().getVersion();
+        // don't override explicitly requested version different from manifest one
+        if (module != null && (requestedVersion == null || requestedVersion.equals(version))) {
+          String notation = module.split(":").length > 2 ? module : module + ":" + version;
+          logger.info("Using module {} for plugin {}", notation, d.getRequested().getId());
+          d.useModule(notation);
+        }
+      });
+    }
+
+    Map<String, String> catalogContents = manifest instanceof DefaultBootstrapManifestBuilder
+        ? ((DefaultBootstrapManifestBuilder) manifest).getCatalogContents().get()
+        : Collections.emptyMap();
+
     settings.dependencyResolutionManagement(drm -> {
       drm.versionCatalogs(vc -> {
         manifest.getCatalogs().get().forEach((alias, dependencyNotation) -> {
+          String content = catalogContents.get(alias);
+          if (content != null) {
+            Path file = materializeCatalog(settings, alias, content);
+            logger.info("Adding inline catalog {} -> {}", alias, file);
+            vc.create(alias, c -> c.from(objectFactory.fileCollection().from(file)));
+            return;
+          }
+
           String dependencyNotationWithVersion = dependencyNotation + ":" + version;
           logger.info("Adding catalog {} -> {}", alias, dependencyNotationWithVersion);
           vc.create(alias, c -> c.from(dependencyNotationWithVersion));
@@ -59,4 +106,22 @@ public class BootstrapManifestAction implements Action<Settings> {
       });
     });
   }
+
+  private Path materializeCatalog(Settings settings, String alias, String content) {
+    Path file = settings.getRootDir().toPath()
+        .resolve(INLINE_CATALOGS_PATH)
+        .resolve(name)
+        .resolve(alias + ".versions.toml");
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    try {
+      // keep file untouched when content is the same
+      if (!Files.isRegularFile(file) || !Arrays.equals(Files.readAllBytes(file), bytes)) {
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+      }
+    } catch (IOException e) {
+      throw new GradleException("Failed to write inline catalog " + alias + " to " + file, e);
+    }
+    return file;
+  }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.impl;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.internal.work.WorkerThreadRegistry;
+import ws.gross.gradle.utils.PrefetchModules;
+
+// Resolves modules into the module cache in background while projects are configured.
+// Modules resolved by the build are recorded, so builds without lockfiles prefetch them next time.
+//
+// Thread-safety assumptions:
+// - the configuration is created on the Gradle thread and isn't touched by anything else once started,
+//   it belongs to settings script, so its resolution doesn't take any project lock and doesn't block configuration;
+// - the background thread is registered as a worker, so it holds a worker lease like any Gradle worker,
+//   i.e. it takes one of --max-workers slots while running;
+// - prefetch is joined after projects are evaluated, so it never overlaps with task graph calculation or execution;
+// - record is called from resolutions of any project, possibly concurrently with --parallel,
+//   so recorded modules are kept in a concurrent set.
+public abstract class DependencyPrefetcher implements BuildService<DependencyPrefetcher.Params>, AutoCloseable {
+  private static final Logger logger = Logging.getLogger(DependencyPrefetcher.class);
+
+  public static final String SERVICE_NAME = "privateRepoDependencyPrefetcher";
+
+  public interface Params extends BuildServiceParameters {
+    RegularFileProperty getResolvedModulesFile();
+  }
+
+  private final Set<String> resolved = ConcurrentHashMap.newKeySet();
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "private-repo-prefetch");
+    t.setDaemon(true);
+    return t;
+  });
+
+  @Nullable
+  private Future<?> prefetch;
+
+  public void record(ResolutionResult result) {
+    result.getAllComponents().forEach(c -> {
+      if (c.getId() instanceof ModuleComponentIdentifier) {
+        ModuleComponentIdentifier id = (ModuleComponentIdentifier) c.getId();
+        resolved.add(id.getGroup() + ":" + id.getModule() + ":" + id.getVersion());
+      }
+    });
+  }
+
+  // lenient, so modules missing from repositories don't fail the build
+  public synchronized void start(Configuration configuration, WorkerThreadRegistry workerThreadRegistry) {
+    int count = configuration.getDependencies().size();
+    prefetch = executor.submit(() -> workerThreadRegistry.runAsWorkerThread(() -> {
+      long start = System.nanoTime();
+      int artifacts = configuration.getIncoming().artifactView(v -> v.lenient(true)).getArtifacts().getArtifacts().size();
+      logger.info("Prefetched {} artifacts of {} modules in {} ms",
+          artifacts, count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }));
+  }
+
+  // prefetch failure doesn't fail the build, projects resolve the modules themselves
+  public synchronized void join() {
+    if (prefetch == null) {
+      return;
+    }
+    try {
+      long start = System.nanoTime();
+      prefetch.get();
+      logger.info("Waited {} ms for prefetch", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (ExecutionException e) {
+      logger.warn("Dependency prefetch failed: {}", e.getCause().getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      prefetch = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    // configuration may fail before projects are evaluated, background resolution mustn't outlive the build
+    join();
+    executor.shutdownNow();
+
+    Path path = getParameters().getResolvedModulesFile().get().getAsFile().toPath();
+    if (!resolved.isEmpty() && !resolved.equals(PrefetchModules.readResolved(path))) {
+      PrefetchModules.writeResolved(path, new TreeSet<>(resolved));
+    }
+  }
+}
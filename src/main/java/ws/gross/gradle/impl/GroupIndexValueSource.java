@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import ws.gross.gradle.utils.GroupIndex;
+
+import static ws.gross.gradle.utils.GradleUtils.rawGradlePropertyOrEnvVar;
+
+// Obtained through ValueSource, so configuration cache is invalidated when the index changes
+public abstract class GroupIndexValueSource implements ValueSource<List<String>, GroupIndexValueSource.Params> {
+  private static final Logger logger = Logging.getLogger(GroupIndexValueSource.class);
+
+  public static final String GROUP_INDEX_CACHE_PATH = "caches/private-repo/group-index";
+
+  public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+
+  private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^\\w.-]");
+
+  private static final int CONNECT_TIMEOUT_MS = 5_000;
+  private static final int READ_TIMEOUT_MS = 10_000;
+
+  public interface Params extends ValueSourceParameters {
+    Property<String> getUrl();
+
+    // credentials are looked up by name in obtain(), so password isn't stored with configuration cache entry
+    Property<String> getCredentialsName();
+
+    DirectoryProperty getCacheDir();
+
+    Property<Long> getTtlMinutes();
+
+    Property<Boolean> getOffline();
+
+    Property<Boolean> getRefresh();
+  }
+
+  @Inject
+  protected abstract ProviderFactory getProviders();
+
+  @Override
+  public List<String> obtain() {
+    Params params = getParameters();
+    String url = params.getUrl().get();
+    Path cachePath = params.getCacheDir().get().getAsFile().toPath()
+        .resolve(UNSAFE_FILE_NAME_CHARS.matcher(url).replaceAll("_") + ".properties");
+
+    Optional<GroupIndex> cached = GroupIndex.read(cachePath, url);
+    Duration ttl = Duration.ofMinutes(params.getTtlMinutes().get());
+    if (cached.isPresent() && !params.getRefresh().get()
+        && (params.getOffline().get() || cached.get().isFresh(ttl, Instant.now()))) {
+      logger.info("Using cached group index {}", url);
+      return cached.get().getGroups();
+    }
+
+    if (params.getOffline().get()) {
+      logger.warn("Group index {} is not cached, can't fetch it in offline mode", url);
+      return Collections.emptyList();
+    }
+
+    try {
+      GroupIndex index = new GroupIndex(GroupIndex.parse(fetch(url)), Instant.now());
+      logger.info("Fetched group index {} with {} groups", url, index.getGroups().size());
+      index.write(cachePath, url);
+      return index.getGroups();
+    } catch (IOException | GradleException e) {
+      if (cached.isPresent()) {
+        logger.warn("Failed to fetch group index {}, using stale cached copy: {}", url, e.getMessage());
+        return cached.get().getGroups();
+      }
+      logger.warn("Failed to fetch group index {}: {}", url, e.getMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  private String fetch(String url) throws IOException {
+    URLConnection conn = new URL(url).openConnection();
+    conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+    conn.setReadTimeout(READ_TIMEOUT_MS);
+    String name = getParameters().getCredentialsName().getOrNull();
+    String username = name == null ? null : rawGradlePropertyOrEnvVar(getProviders(), name + "Username").getOrNull();
+    if (conn instanceof HttpURLConnection && username != null) {
+      String password = rawGradlePropertyOrEnvVar(getProviders(), name + "Password").getOrElse("");
+      String userInfo = username + ":" + password;
+      conn.setRequestProperty("Authorization",
+          "Basic " + Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    try {
+      if (conn instanceof HttpURLConnection) {
+        int code = ((HttpURLConnection) conn).getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) {
+          throw new IOException("unexpected HTTP status " + code);
+        }
+      }
+
+      try (InputStream is = conn.getInputStream()) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          os.write(buffer, 0, read);
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+      }
+    } finally {
+      if (conn instanceof HttpURLConnection) {
+        ((HttpURLConnection) conn).disconnect();
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.impl;
+
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.BuildOperationListenerManager;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+import org.gradle.internal.resource.ExternalResourceReadBuildOperationType;
+import org.gradle.internal.resource.ExternalResourceReadMetadataBuildOperationType;
+import ws.gross.gradle.utils.HttpRequestLog;
+
+// Collects remote resource reads from build operations, summary is logged and written when build finishes.
+// Build operations don't expose http status, so missing resource is reported instead of 404.
+// Metadata reads don't even report missing resources, so they are recorded without outcome.
+public abstract class HttpRequestRecorder implements BuildService<HttpRequestRecorder.Params>, BuildOperationListener, AutoCloseable {
+  private static final Logger logger = Logging.getLogger(HttpRequestRecorder.class);
+
+  public static final String SERVICE_NAME = "privateRepoHttpRequestRecorder";
+
+  public interface Params extends BuildServiceParameters {
+    RegularFileProperty getLogFile();
+  }
+
+  private final HttpRequestLog log = new HttpRequestLog();
+
+  @Nullable
+  private BuildOperationListenerManager listenerManager;
+
+  public void attach(BuildOperationListenerManager listenerManager) {
+    this.listenerManager = listenerManager;
+    listenerManager.addListener(this);
+  }
+
+  public HttpRequestLog getLog() {
+    return log;
+  }
+
+  @Override
+  public void started(BuildOperationDescriptor descriptor, OperationStartEvent event) {
+  }
+
+  @Override
+  public void progress(OperationIdentifier id, OperationProgressEvent event) {
+  }
+
+  @Override
+  public void finished(BuildOperationDescriptor descriptor, OperationFinishEvent event) {
+    Object details = descriptor.getDetails();
+    String url;
+    HttpRequestLog.Outcome outcome = event.getFailure() != null ? HttpRequestLog.Outcome.FAILED : HttpRequestLog.Outcome.OK;
+    if (details instanceof ExternalResourceReadBuildOperationType.Details) {
+      url = ((ExternalResourceReadBuildOperationType.Details) details).getLocation();
+    } else if (details instanceof ExternalResourceReadMetadataBuildOperationType.Details) {
+      url = ((ExternalResourceReadMetadataBuildOperationType.Details) details).getLocation();
+      if (outcome == HttpRequestLog.Outcome.OK) {
+        outcome = HttpRequestLog.Outcome.METADATA;
+      }
+    } else {
+      return;
+    }
+
+    long bytes = 0;
+    Object result = event.getResult();
+    if (result instanceof ExternalResourceReadBuildOperationType.Result) {
+      ExternalResourceReadBuildOperationType.Result read = (ExternalResourceReadBuildOperationType.Result) result;
+      bytes = read.getBytesRead();
+      if (read.isMissing()) {
+        outcome = HttpRequestLog.Outcome.MISSING;
+      }
+    }
+    log.record(url, outcome, bytes, event.getEndTime() - event.getStartTime());
+  }
+
+  @Override
+  public void close() {
+    if (listenerManager != null) {
+      listenerManager.removeListener(this);
+    }
+
+    Path logFile = getParameters().getLogFile().get().getAsFile().toPath();
+    logger.lifecycle("Repository requests (details in {}):", logFile);
+    log.summary().forEach(l -> logger.lifecycle("  {}", l));
+    log.write(logFile);
+  }
+}
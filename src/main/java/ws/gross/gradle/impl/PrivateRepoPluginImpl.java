@@ -16,33 +16,95 @@
 
 package ws.gross.gradle.impl;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.artifacts.repositories.RepositoryContentDescriptor;
+import org.gradle.api.credentials.PasswordCredentials;
+import org.gradle.api.initialization.ProjectDescriptor;
 import org.gradle.api.initialization.Settings;
+import org.gradle.api.initialization.dsl.ScriptHandler;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.artifacts.DependencyResolutionServices;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.provider.Provider;
-import org.gradle.api.provider.ProviderFactory;
+import org.gradle.internal.operations.BuildOperationListenerManager;
+import org.gradle.internal.work.WorkerLeaseService;
 import ws.gross.gradle.BootstrapPlugin;
 import ws.gross.gradle.PrivateRepoBasePlugin;
 import ws.gross.gradle.PrivateRepoPlugin;
-import ws.gross.gradle.utils.GradleUtils;
+import ws.gross.gradle.extensions.DefaultPrivateRepoExtension;
+import ws.gross.gradle.extensions.PrivateRepoExtension;
+import ws.gross.gradle.tasks.RepositoryRoutingTask;
+import ws.gross.gradle.utils.GroupFilterCompiler;
+import ws.gross.gradle.utils.HttpRequestLog;
 import ws.gross.gradle.utils.NexusConfiguration;
+import ws.gross.gradle.utils.NexusRepository;
+import ws.gross.gradle.utils.PhaseTracer;
+import ws.gross.gradle.utils.PrefetchModules;
+import ws.gross.gradle.utils.PrivateRepoSettings;
+import ws.gross.gradle.utils.RepositoryHealthProbe;
+import ws.gross.gradle.utils.RepositoryRouting;
 
 import static org.gradle.api.artifacts.ArtifactRepositoryContainer.DEFAULT_MAVEN_CENTRAL_REPO_NAME;
+import static org.gradle.api.artifacts.ArtifactRepositoryContainer.MAVEN_CENTRAL_URL;
+import static org.gradle.api.internal.artifacts.BaseRepositoryFactory.PLUGIN_PORTAL_DEFAULT_URL;
 import static org.gradle.api.internal.artifacts.dsl.DefaultRepositoryHandler.GRADLE_PLUGIN_PORTAL_REPO_NAME;
 import static ws.gross.gradle.utils.GradleUtils.*;
+import static ws.gross.gradle.utils.NexusConfiguration.DEFAULT_GRADLE_PLUGIN_PORTAL_MIRROR;
+import static ws.gross.gradle.utils.NexusConfiguration.DEFAULT_MAVEN_CENTRAL_MIRROR;
+import static ws.gross.gradle.utils.NexusConfiguration.GRADLE_PLUGIN_PORTAL_MIRROR_REPO_NAME;
+import static ws.gross.gradle.utils.NexusConfiguration.MAVEN_CENTRAL_MIRROR_REPO_NAME;
 import static ws.gross.gradle.utils.NexusConfiguration.NEXUS_REPO_NAME;
+import static ws.gross.gradle.utils.NexusConfiguration.RELEASES_REPO_NAME;
+import static ws.gross.gradle.utils.NexusConfiguration.SNAPSHOTS_REPO_NAME;
 
 public class PrivateRepoPluginImpl implements Plugin<Settings> {
   private static final Logger logger = Logging.getLogger(PrivateRepoPluginImpl.class);
 
+  private static final String PLUGIN_MANAGEMENT = "pluginManagement";
+  private static final String DEPENDENCY_RESOLUTION_MANAGEMENT = "dependencyResolutionManagement";
+
+  public static final String ROUTING_TASK_NAME = "repositoryRouting";
+
+  public static final String MANIFEST_PLUGIN_IDS_PATH = ".gradle/private-repo/manifest-plugin-ids.txt";
+
   private Settings settings;
   private NexusConfiguration conf;
-  private Provider<String> repo;
+  private PrivateRepoSettings repoSettings;
+  private String repo;
+  private List<String> groups;
+  private List<String> groupRegexes;
+  private List<NexusRepository> repositories;
+  private List<String> internalGroups;
+  private List<String> internalGroupRegexes;
+  private List<String> learnedModules = Collections.emptyList();
+  private int groupFilterThreshold;
+  private boolean mirror;
 
   @Override
   public void apply(Settings settings) {
@@ -50,21 +112,266 @@ public class PrivateRepoPluginImpl implements Plugin<Settings> {
 
     this.settings = settings;
 
-    @SuppressWarnings("UnstableApiUsage")
-    ProviderFactory providers = settings.getProviders();
-    conf = NexusConfiguration.from(providers);
-    repo = gradlePropertyOrEnvVar(providers, "repo").orElse("public");
+    DefaultPrivateRepoExtension ext = (DefaultPrivateRepoExtension) settings.getExtensions().getByType(PrivateRepoExtension.class);
+    repoSettings = ext.getPrivateRepoSettings();
+    conf = NexusConfiguration.from(repoSettings, settings.getProviders(), settings.getStartParameter());
+    repo = repoSettings.getString("repo", "public");
 
     if (!conf.getBaseUrl().isPresent()) {
-      String prefix = privateRepoPrefix(providers);
-      throw new GradleException(prefix + "Url should be defined in gradle properties");
+      throw new GradleException(repoSettings.getPrefix() + "Url should be defined in gradle properties");
+    }
+
+    if (repoSettings.getBoolean("healthCheck", false) && !settings.getStartParameter().isOffline()) {
+      ext.getTracer().trace("healthCheck", this::checkHealth);
     }
 
-    configurePluginRepos();
-    configureRepos();
+    groups = new ArrayList<>(repoSettings.getList("groups", Collections.emptyList()));
+    repoSettings.getString("groupIndex")
+        .map(this::loadGroupIndex)
+        .orElse(Collections.emptyList())
+        .stream()
+        .filter(g -> !groups.contains(g))
+        .forEach(groups::add);
+
+    groupRegexes = repoSettings.getList("groupRegexes").orElseGet(() -> conf.getDefaultGroupRegex().get());
+
+    // groups of all private repositories are excluded from public ones
+    repositories = NexusRepository.from(repoSettings);
+    internalGroups = new ArrayList<>(groups);
+    internalGroupRegexes = new ArrayList<>(groupRegexes);
+    repositories.forEach(r -> {
+      internalGroups.addAll(r.getGroups());
+      internalGroupRegexes.addAll(r.getGroupRegexes());
+    });
+
+    if (repoSettings.getBoolean("learnRouting", false)) {
+      configureRoutingRecorder();
+    }
+
+    if (repoSettings.getBoolean("httpTrace", false)) {
+      configureHttpRequestRecorder();
+    }
+
+    groupFilterThreshold = repoSettings.getInt("groupFilterThreshold", GroupFilterCompiler.DEFAULT_THRESHOLD);
+    mirror = repoSettings.getBoolean("mirror", false);
+    boolean pluginRouting = repoSettings.getBoolean("pluginRouting", false);
+
+    PhaseTracer tracer = ext.getTracer();
+    if (pluginRouting) {
+      tracer.trace("configureRoutedPluginRepos", this::configureRoutedPluginRepos);
+    } else {
+      tracer.trace("configurePluginRepos", this::configurePluginRepos);
+    }
+    tracer.trace("configureRepos", this::configureRepos);
 
     // apply only after repositories are configured
     settings.getPluginManager().apply(BootstrapPlugin.class);
+
+    if (pluginRouting) {
+      // runs after bootstrap manifests are resolved, see BootstrapPlugin
+      settings.getGradle().settingsEvaluated(s -> storeManifestPluginIds());
+    }
+
+    if (repoSettings.getBoolean("prefetch", false)) {
+      // runs after bootstrap manifests are applied, so prefetch doesn't compete with them
+      settings.getGradle().settingsEvaluated(s -> startPrefetch());
+    }
+  }
+
+  // Modules from lockfiles (or resolved by the previous build without lockfiles) are downloaded
+  // into the module cache in background, so downloads overlap with project configuration.
+  // Nothing runs on configuration cache hit: settings aren't evaluated, and modules were cached by the storing build.
+  private void startPrefetch() {
+    List<String> taskNames = settings.getStartParameter().getTaskNames();
+    if (settings.getStartParameter().isOffline() || settings.getStartParameter().isDryRun()
+        || !PrefetchModules.resolvesDependencies(taskNames)) {
+      logger.info("Nothing to prefetch for {}", taskNames);
+      return;
+    }
+
+    Path resolvedFile = settings.getRootDir().toPath().resolve(PrefetchModules.RESOLVED_MODULES_PATH);
+    Provider<DependencyPrefetcher> prefetcher = settings.getGradle().getSharedServices()
+        .registerIfAbsent(DependencyPrefetcher.SERVICE_NAME, DependencyPrefetcher.class, spec -> {
+          spec.getParameters().getResolvedModulesFile().set(resolvedFile.toFile());
+        });
+
+    List<Path> projectDirs = new ArrayList<>();
+    collectProjectDirs(settings.getRootProject(), projectDirs);
+    Set<String> modules = PrefetchModules.readLockfiles(projectDirs);
+    if (modules.isEmpty()) {
+      modules = PrefetchModules.readResolved(resolvedFile);
+      Action<Configuration> recordResolution = c -> c.getIncoming().afterResolve(rd -> {
+        prefetcher.get().record(rd.getResolutionResult());
+      });
+      settings.getGradle().allprojects(p -> {
+        p.getBuildscript().getConfigurations().configureEach(recordResolution);
+        p.getConfigurations().configureEach(recordResolution);
+      });
+    }
+
+    if (modules.isEmpty()) {
+      logger.info("Nothing to prefetch");
+      return;
+    }
+
+    // Settings classpath is already resolved at this point, so settings script resolution services are reused
+    // with the same repositories in the same order as dependencyResolutionManagement has. Module cache entries
+    // are keyed by repository id, so the projects resolve prefetched modules from cache.
+    // Repositories declared in settings script itself aren't added, their modules are resolved by projects as usual.
+    ScriptHandler buildscript = settings.getBuildscript();
+    buildscript.getRepositories().clear();
+    addProjectRepositories(buildscript.getRepositories());
+
+    logger.info("Prefetching {} modules in background", modules.size());
+    Configuration cnf = buildscript.getConfigurations().detachedConfiguration(modules.stream()
+        .map(m -> buildscript.getDependencies().create(m))
+        .toArray(Dependency[]::new));
+    // lockfiles and resolved set already contain transitive dependencies
+    cnf.setTransitive(false);
+    prefetcher.get().start(cnf, ((GradleInternal) settings.getGradle()).getServices().get(WorkerLeaseService.class));
+    settings.getGradle().projectsEvaluated(g -> prefetcher.get().join());
+  }
+
+  private static void collectProjectDirs(ProjectDescriptor project, List<Path> result) {
+    result.add(project.getProjectDir().toPath());
+    project.getChildren().forEach(c -> collectProjectDirs(c, result));
+  }
+
+  // Relative index path is resolved as a path inside nexus repository, e.g. `internal-meta/group-index.txt`
+  @SuppressWarnings("UnstableApiUsage")
+  private List<String> loadGroupIndex(String location) {
+    String url = location.contains("://") ? location : conf.repoUrl(location).get();
+    long ttl = repoSettings.getLong("groupIndexTtl", GroupIndexValueSource.DEFAULT_TTL.toMinutes());
+
+    return settings.getProviders().of(GroupIndexValueSource.class, spec -> {
+      GroupIndexValueSource.Params params = spec.getParameters();
+      params.getUrl().set(url);
+      params.getCacheDir().set(settings.getGradle().getGradleUserHomeDir().toPath()
+          .resolve(GroupIndexValueSource.GROUP_INDEX_CACHE_PATH).toFile());
+      params.getTtlMinutes().set(ttl);
+      params.getOffline().set(settings.getStartParameter().isOffline());
+      params.getRefresh().set(settings.getStartParameter().isRefreshDependencies());
+      // same `<prefix>Username` and `<prefix>Password` as repository credentials
+      params.getCredentialsName().set(repoSettings.getPrefix());
+    }).get();
+  }
+
+  // Fails fast when some repository is degraded instead of waiting for timeouts of each artifact request.
+  // Nexus may be replaced by a fallback instance serving the same repositories.
+  private void checkHealth() {
+    Duration timeout = Duration.ofMillis(repoSettings.getLong("healthCheckTimeout", RepositoryHealthProbe.DEFAULT_TIMEOUT.toMillis()));
+    List<RepositoryHealthProbe.Result> failed = probe(conf, timeout, true);
+    if (failed.isEmpty()) {
+      return;
+    }
+
+    String baseUrl = conf.getBaseUrl().get();
+    Optional<String> fallbackUrl = repoSettings.getString("healthCheckFallbackUrl");
+    if (fallbackUrl.isPresent() && failed.stream().allMatch(r -> r.getUrl().startsWith(baseUrl))) {
+      NexusConfiguration fallback = new NexusConfiguration(
+          settings.getProviders().provider(fallbackUrl::get), conf.getCredentials(), conf.getDefaultGroupRegex());
+      List<RepositoryHealthProbe.Result> fallbackFailed = probe(fallback, timeout, false);
+      if (fallbackFailed.isEmpty()) {
+        logger.warn("Repository health check failed, using {} instead of {}:{}", fallbackUrl.get(), baseUrl, report(failed));
+        conf = fallback;
+        return;
+      }
+      failed.addAll(fallbackFailed);
+    }
+
+    throw new GradleException(String.format("Repository health check failed:%s%n"
+                                            + "Use --offline to build with cached dependencies or set %sHealthCheck=false to skip the check",
+        report(failed), repoSettings.getPrefix()));
+  }
+
+  private List<RepositoryHealthProbe.Result> probe(NexusConfiguration c, Duration timeout, boolean upstreams) {
+    Map<String, String> targets = new LinkedHashMap<>();
+    targets.put(NEXUS_REPO_NAME, c.repoUrl(repo).get());
+    NexusRepository.from(repoSettings).forEach(r -> targets.put(r.getName(), c.repoUrl(r.getPath()).get()));
+    targets.put(RELEASES_REPO_NAME, c.repoUrl(repoSettings.getString("releasesRepo", "releases")).get());
+    targets.put(SNAPSHOTS_REPO_NAME, c.repoUrl(repoSettings.getString("snapshotsRepo", "snapshots")).get());
+    if (repoSettings.getBoolean("mirror", false)) {
+      String mavenCentral = repoSettings.getString("mavenCentralMirror", DEFAULT_MAVEN_CENTRAL_MIRROR).trim();
+      String pluginPortal = repoSettings.getString("gradlePluginPortalMirror", DEFAULT_GRADLE_PLUGIN_PORTAL_MIRROR).trim();
+      if (!mavenCentral.isEmpty()) {
+        targets.put(MAVEN_CENTRAL_MIRROR_REPO_NAME, c.repoUrl(mavenCentral).get());
+      }
+      if (!pluginPortal.isEmpty()) {
+        targets.put(GRADLE_PLUGIN_PORTAL_MIRROR_REPO_NAME, c.repoUrl(pluginPortal).get());
+      }
+    } else if (upstreams) {
+      targets.put(DEFAULT_MAVEN_CENTRAL_REPO_NAME, MAVEN_CENTRAL_URL);
+      targets.put(GRADLE_PLUGIN_PORTAL_REPO_NAME, PLUGIN_PORTAL_DEFAULT_URL);
+    }
+
+    String username = null;
+    String password = null;
+    if (c.getCredentials().isPresent() && c.getCredentials().get() instanceof PasswordCredentials) {
+      PasswordCredentials credentials = (PasswordCredentials) c.getCredentials().get();
+      username = credentials.getUsername();
+      password = credentials.getPassword();
+    }
+
+    RepositoryHealthProbe probe = new RepositoryHealthProbe(timeout, c.getBaseUrl().get(), username, password);
+    List<RepositoryHealthProbe.Result> results = probe.probe(targets);
+    results.forEach(r -> logger.info("Health check of {}", r));
+    return results.stream().filter(r -> !r.isHealthy()).collect(Collectors.toList());
+  }
+
+  private static String report(List<RepositoryHealthProbe.Result> results) {
+    StringBuilder sb = new StringBuilder();
+    results.forEach(r -> sb.append(System.lineSeparator()).append("  ").append(r));
+    return sb.toString();
+  }
+
+  // Modules served only by private repositories in previous builds are excluded from public ones
+  private void configureRoutingRecorder() {
+    Path routingFile = settings.getRootDir().toPath().resolve(RepositoryRouting.ROUTING_PATH);
+
+    List<String> privateRepos = new ArrayList<>();
+    privateRepos.add(NEXUS_REPO_NAME);
+    repositories.forEach(r -> privateRepos.add(r.getName()));
+    long ttlMinutes = repoSettings.getLong("learnRoutingTtl", RepositoryRouting.DEFAULT_TTL.toMinutes());
+    learnedModules = RepositoryRouting.read(routingFile, Duration.ofMinutes(ttlMinutes)).modulesServedOnlyBy(privateRepos);
+
+    Provider<RoutingRecorder> recorder = settings.getGradle().getSharedServices()
+        .registerIfAbsent(RoutingRecorder.SERVICE_NAME, RoutingRecorder.class, spec -> {
+          spec.getParameters().getRoutingFile().set(routingFile.toFile());
+          spec.getParameters().getTtlMinutes().set(ttlMinutes);
+        });
+
+    Action<Configuration> recordResolution = c -> c.getIncoming().afterResolve(rd -> {
+      recorder.get().record(rd.getResolutionResult());
+    });
+    settings.getGradle().allprojects(p -> {
+      p.getBuildscript().getConfigurations().configureEach(recordResolution);
+      p.getConfigurations().configureEach(recordResolution);
+    });
+
+    settings.getGradle().rootProject(p -> p.getTasks().register(ROUTING_TASK_NAME, RepositoryRoutingTask.class, t -> {
+      t.setGroup("help");
+      t.setDescription("Prints repository routing learned from resolution results, use --reset to forget it");
+      t.getRecorder().set(recorder);
+      t.usesService(recorder);
+    }));
+  }
+
+  // Requests are taken from build operations, so the listener is attached as early as possible
+  private void configureHttpRequestRecorder() {
+    Path logFile = settings.getRootDir().toPath().resolve(HttpRequestLog.LOG_PATH);
+    Provider<HttpRequestRecorder> recorder = settings.getGradle().getSharedServices()
+        .registerIfAbsent(HttpRequestRecorder.SERVICE_NAME, HttpRequestRecorder.class, spec -> {
+          spec.getParameters().getLogFile().set(logFile.toFile());
+        });
+    recorder.get().attach(((GradleInternal) settings.getGradle()).getServices().get(BuildOperationListenerManager.class));
+
+    // repositories are completely configured only after settings script
+    settings.getGradle().settingsEvaluated(s -> {
+      HttpRequestLog log = recorder.get().getLog();
+      Action<MavenArtifactRepository> addRepository = r -> log.addRepository(r.getName(), r.getUrl().toString());
+      s.getPluginManagement().getRepositories().withType(MavenArtifactRepository.class, addRepository);
+      s.getDependencyResolutionManagement().getRepositories().withType(MavenArtifactRepository.class, addRepository);
+    });
   }
 
   private void configurePluginRepos() {
@@ -75,61 +382,195 @@ public class PrivateRepoPluginImpl implements Plugin<Settings> {
       logger.info("Adding {}({}) to pluginManagement", NEXUS_REPO_NAME, repoUrl.get());
       maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials());
 
-      logger.info("Adding mavenCentral to pluginManagement");
-      rh.mavenCentral();
-
-      logger.info("Adding gradlePluginPortal to pluginManagement");
-      rh.gradlePluginPortal();
+      addMavenCentral(rh, PLUGIN_MANAGEMENT, doNothing());
+      addGradlePluginPortal(rh, PLUGIN_MANAGEMENT, doNothing());
     });
   }
 
-  @SuppressWarnings("UnstableApiUsage")
-  private void configureRepos() {
-    ProviderFactory providers = settings.getProviders();
+  // Public repositories go first with internal groups and plugin markers excluded, so public plugins
+  // never hit nexus and internal ones are looked up only there.
+  // Content filters can't be changed after the repository is used to resolve manifests,
+  // so plugin ids from bootstrap manifests are taken from the previous build.
+  private void configureRoutedPluginRepos() {
+    Set<String> manifestPluginIds = loadManifestPluginIds();
 
-    List<String> groups = gradlePropertyOrEnvVar(providers, "groups")
-        .map(GradleUtils::parseList)
-        .orElse(Collections.emptyList())
-        .get();
-
-    List<String> groupRegexes = gradlePropertyOrEnvVar(providers,"groupRegexes")
-        .map(GradleUtils::parseList)
-        .orElse(conf.getDefaultGroupRegex())
-        .get();
-
-    settings.getDependencyResolutionManagement().repositories(rh -> {
-      logger.info("Adding mavenCentral to dependencyResolutionManagement");
-      if (rh.findByName(DEFAULT_MAVEN_CENTRAL_REPO_NAME) == null) {
-        rh.mavenCentral(r -> {
-          r.content(cd -> {
-            groups.forEach(cd::excludeGroup);
-            groupRegexes.forEach(cd::excludeGroupByRegex);
-          });
-        });
-      }
+    settings.getPluginManagement().repositories(rh -> {
+      rh.removeIf(r -> r.getName().equals(GRADLE_PLUGIN_PORTAL_REPO_NAME));
+
+      addGradlePluginPortal(rh, PLUGIN_MANAGEMENT, cd -> excludeInternal(cd, manifestPluginIds));
+      addMavenCentral(rh, PLUGIN_MANAGEMENT, cd -> excludeInternal(cd, manifestPluginIds));
 
       Provider<String> repoUrl = conf.repoUrl(repo);
-      boolean exclusive = gradlePropertyOrEnvVar(providers,"exclusive")
-          .map(Boolean::valueOf)
-          .orElse(false)
-          .get();
-
-      if (exclusive) {
-        logger.info("Adding exclusive {}({}) to dependencyResolutionManagement", NEXUS_REPO_NAME, repoUrl.get());
-        rh.exclusiveContent(ecr -> {
-          ecr.forRepository(() -> maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials()));
-          ecr.filter(cd -> {
-            groups.forEach(cd::includeGroup);
-            groupRegexes.forEach(cd::includeGroupByRegex);
-          });
-        });
+      logger.info("Adding {}({}) to pluginManagement", NEXUS_REPO_NAME, repoUrl.get());
+      maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials());
+    });
+  }
+
+  private void addMavenCentral(RepositoryHandler rh, String target, Action<? super RepositoryContentDescriptor> content) {
+    if (mirror) {
+      addMirror(rh, MAVEN_CENTRAL_MIRROR_REPO_NAME, "mavenCentralMirror", DEFAULT_MAVEN_CENTRAL_MIRROR, target, content);
+    } else {
+      logger.info("Adding mavenCentral to {}", target);
+      rh.mavenCentral(r -> r.content(content));
+    }
+  }
+
+  private void addGradlePluginPortal(RepositoryHandler rh, String target, Action<? super RepositoryContentDescriptor> content) {
+    if (mirror) {
+      addMirror(rh, GRADLE_PLUGIN_PORTAL_MIRROR_REPO_NAME, "gradlePluginPortalMirror", DEFAULT_GRADLE_PLUGIN_PORTAL_MIRROR, target, content);
+    } else {
+      logger.info("Adding gradlePluginPortal to {}", target);
+      rh.gradlePluginPortal(r -> r.content(content));
+    }
+  }
+
+  // Nexus proxy repository replacing public one, so all requests go to a single host.
+  // Empty repo name means that upstream is already proxied by the main nexus repo (e.g. group repository).
+  private void addMirror(
+      RepositoryHandler rh,
+      String name,
+      String property,
+      String defaultMirror,
+      String target,
+      Action<? super RepositoryContentDescriptor> content
+  ) {
+    String mirrorRepo = repoSettings.getString(property, defaultMirror).trim();
+    if (mirrorRepo.isEmpty()) {
+      logger.info("Skipping {} in {}, expected to be proxied by {}", name, target, NEXUS_REPO_NAME);
+      return;
+    }
+
+    Provider<String> repoUrl = conf.repoUrl(mirrorRepo);
+    logger.info("Adding {}({}) to {}", name, repoUrl.get(), target);
+    maven(rh, name, repoUrl, conf.getCredentials(), r -> r.content(content));
+  }
+
+  private void excludeInternal(RepositoryContentDescriptor cd, Collection<String> pluginIds) {
+    // plugin marker group is the plugin id
+    List<String> internal = new ArrayList<>(internalGroups);
+    internal.addAll(pluginIds);
+    groupFilter(internal, internalGroupRegexes, cd::excludeGroup, cd::excludeGroupByRegex);
+    excludeLearned(cd);
+  }
+
+  // modules of the same group are merged into a single filter
+  private void excludeLearned(RepositoryContentDescriptor cd) {
+    Map<String, List<String>> byGroup = new TreeMap<>();
+    learnedModules.forEach(m -> {
+      String[] parts = m.split(":", 2);
+      byGroup.computeIfAbsent(parts[0], g -> new ArrayList<>()).add(parts[1]);
+    });
+    byGroup.forEach((group, modules) -> {
+      if (modules.size() == 1) {
+        cd.excludeModule(group, modules.get(0));
       } else {
-        logger.info("Adding {}({}) to dependencyResolutionManagement", NEXUS_REPO_NAME, repoUrl.get());
-        maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials());
+        cd.excludeModuleByRegex(Pattern.quote(group),
+            modules.stream().map(Pattern::quote).collect(Collectors.joining("|", "(?:", ")")));
       }
     });
   }
 
+  private void groupFilter(
+      Collection<String> groups,
+      Collection<String> regexes,
+      Consumer<String> groupFilter,
+      Consumer<String> regexFilter
+  ) {
+    GroupFilterCompiler.addFilters(groups, regexes, groupFilterThreshold, groupFilter, regexFilter);
+  }
+
+  private Path manifestPluginIdsPath() {
+    return settings.getRootDir().toPath().resolve(MANIFEST_PLUGIN_IDS_PATH);
+  }
+
+  private Set<String> loadManifestPluginIds() {
+    Path path = manifestPluginIdsPath();
+    if (!Files.isRegularFile(path)) {
+      return Collections.emptySet();
+    }
+
+    try {
+      Set<String> result = new TreeSet<>();
+      Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+          .map(String::trim)
+          .filter(l -> !l.isEmpty())
+          .forEach(result::add);
+      return result;
+    } catch (IOException e) {
+      logger.warn("Failed to read {}: {}", path, e.getMessage());
+      return Collections.emptySet();
+    }
+  }
+
+  private void storeManifestPluginIds() {
+    Set<String> pluginIds = new TreeSet<>();
+    settings.getExtensions().getByType(PrivateRepoExtension.class).getManifests()
+        .forEach(m -> pluginIds.addAll(m.getPluginIds().get()));
+
+    if (pluginIds.equals(loadManifestPluginIds())) {
+      return;
+    }
+
+    Path path = manifestPluginIdsPath();
+    try {
+      Files.createDirectories(path.getParent());
+      Files.write(path, pluginIds, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      logger.warn("Failed to write {}: {}", path, e.getMessage());
+    }
+  }
+
+  private void addRepository(RepositoryHandler rh, NexusRepository r) {
+    Provider<String> repoUrl = conf.repoUrl(r.getPath());
+    if (r.isExclusive()) {
+      logger.info("Adding exclusive {}({}) to dependencyResolutionManagement", r.getName(), repoUrl.get());
+      rh.exclusiveContent(ecr -> {
+        ecr.forRepository(() -> maven(rh, r.getName(), repoUrl, conf.getCredentials()));
+        ecr.filter(cd -> {
+          groupFilter(r.getGroups(), r.getGroupRegexes(), cd::includeGroup, cd::includeGroupByRegex);
+        });
+      });
+    } else {
+      logger.info("Adding {}({}) to dependencyResolutionManagement", r.getName(), repoUrl.get());
+      maven(rh, r.getName(), repoUrl, conf.getCredentials(), m -> m.content(cd -> {
+        groupFilter(r.getGroups(), r.getGroupRegexes(), cd::includeGroup, cd::includeGroupByRegex);
+      }));
+    }
+  }
+
+  @SuppressWarnings("UnstableApiUsage")
+  private void configureRepos() {
+    settings.getDependencyResolutionManagement().repositories(this::addProjectRepositories);
+  }
+
+  @SuppressWarnings("UnstableApiUsage")
+  private void addProjectRepositories(RepositoryHandler rh) {
+    if (mirror || rh.findByName(DEFAULT_MAVEN_CENTRAL_REPO_NAME) == null) {
+      addMavenCentral(rh, DEPENDENCY_RESOLUTION_MANAGEMENT, cd -> {
+        groupFilter(internalGroups, internalGroupRegexes, cd::excludeGroup, cd::excludeGroupByRegex);
+        excludeLearned(cd);
+      });
+    }
+
+    repositories.forEach(r -> addRepository(rh, r));
+
+    Provider<String> repoUrl = conf.repoUrl(repo);
+    boolean exclusive = repoSettings.getBoolean("exclusive", false);
+
+    if (exclusive) {
+      logger.info("Adding exclusive {}({}) to dependencyResolutionManagement", NEXUS_REPO_NAME, repoUrl.get());
+      rh.exclusiveContent(ecr -> {
+        ecr.forRepository(() -> maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials()));
+        ecr.filter(cd -> {
+          groupFilter(groups, groupRegexes, cd::includeGroup, cd::includeGroupByRegex);
+        });
+      });
+    } else {
+      logger.info("Adding {}({}) to dependencyResolutionManagement", NEXUS_REPO_NAME, repoUrl.get());
+      maven(rh, NEXUS_REPO_NAME, repoUrl, conf.getCredentials());
+    }
+  }
+
   public static String getPluginVersion() {
     return PrivateRepoPlugin.class.getPackage().getImplementationVersion();
   }
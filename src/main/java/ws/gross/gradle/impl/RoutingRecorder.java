@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.util.GradleVersion;
+import ws.gross.gradle.utils.RepositoryRouting;
+
+// Records repositories which served each module, table is persisted when build finishes
+public abstract class RoutingRecorder implements BuildService<RoutingRecorder.Params>, AutoCloseable {
+  private static final Logger logger = Logging.getLogger(RoutingRecorder.class);
+
+  public static final String SERVICE_NAME = "privateRepoRoutingRecorder";
+
+  public interface Params extends BuildServiceParameters {
+    RegularFileProperty getRoutingFile();
+
+    Property<Long> getTtlMinutes();
+  }
+
+  // Repository which served a component is only exposed by internal API, so it's accessed reflectively
+  // on Gradle versions it's known to exist in, and learning is disabled otherwise
+  private static final String COMPONENT_RESULT_INTERNAL = "org.gradle.api.internal.artifacts.result.ResolvedComponentResultInternal";
+
+  private static final GradleVersion UNSUPPORTED_GRADLE_VERSION = GradleVersion.version("10.0");
+
+  @Nullable
+  private static final Method REPOSITORY_NAME = repositoryNameMethod();
+
+  private final RepositoryRouting routing;
+
+  private final AtomicBoolean changed = new AtomicBoolean(false);
+
+  public RoutingRecorder() {
+    this.routing = RepositoryRouting.read(routingFile(), Duration.ofMinutes(getParameters().getTtlMinutes().get()));
+  }
+
+  public void record(ResolutionResult result) {
+    if (REPOSITORY_NAME == null) {
+      return;
+    }
+
+    result.getAllComponents().forEach(c -> {
+      ComponentIdentifier id = c.getId();
+      if (!(id instanceof ModuleComponentIdentifier)) {
+        return;
+      }
+
+      ModuleComponentIdentifier mid = (ModuleComponentIdentifier) id;
+      String repository = repositoryName(REPOSITORY_NAME, c);
+      if (repository != null && routing.record(mid.getGroup() + ":" + mid.getModule(), repository)) {
+        changed.set(true);
+      }
+    });
+  }
+
+  @Nullable
+  private static String repositoryName(Method method, ResolvedComponentResult component) {
+    if (!method.getDeclaringClass().isInstance(component)) {
+      return null;
+    }
+    try {
+      return (String) method.invoke(component);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      logger.debug("Can't get repository of {}", component.getId(), e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method repositoryNameMethod() {
+    if (GradleVersion.current().getBaseVersion().compareTo(UNSUPPORTED_GRADLE_VERSION) >= 0) {
+      logger.info("Repository routing isn't learned on {}", GradleVersion.current());
+      return null;
+    }
+    try {
+      return Class.forName(COMPONENT_RESULT_INTERNAL).getMethod("getRepositoryName");
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      logger.info("Repository routing isn't learned, repository of resolved components isn't available: {}", e.toString());
+      return null;
+    }
+  }
+
+  public RepositoryRouting getRouting() {
+    return routing;
+  }
+
+  public void reset() {
+    routing.clear();
+    changed.set(true);
+  }
+
+  @Override
+  public void close() {
+    if (changed.get()) {
+      logger.info("Saving learned repository routing to {}", routingFile());
+      routing.write(routingFile());
+    }
+  }
+
+  private Path routingFile() {
+    return getParameters().getRoutingFile().get().getAsFile().toPath();
+  }
+}
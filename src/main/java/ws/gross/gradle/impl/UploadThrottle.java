@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.impl;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import ws.gross.gradle.utils.AdaptiveConcurrencyLimit;
+
+// Shared by publish tasks of all projects: `maxParallelUsages` bounds publish tasks running at once,
+// the adaptive limit bounds http requests of concurrent publish tasks across the whole build
+public abstract class UploadThrottle implements BuildService<UploadThrottle.Params>, AutoCloseable {
+  private static final Logger logger = Logging.getLogger(UploadThrottle.class);
+
+  public static final String SERVICE_NAME = "privateRepoUploadThrottle";
+
+  public static final int DEFAULT_MAX_PARALLEL_TASKS = 4;
+
+  public static final int DEFAULT_MAX_REQUESTS = 16;
+
+  public interface Params extends BuildServiceParameters {
+    Property<Integer> getInitialRequests();
+
+    Property<Integer> getMaxRequests();
+  }
+
+  private final AdaptiveConcurrencyLimit limit;
+
+  public UploadThrottle() {
+    Params params = getParameters();
+    limit = new AdaptiveConcurrencyLimit(params.getInitialRequests().get(), 1, params.getMaxRequests().get());
+  }
+
+  public AdaptiveConcurrencyLimit getLimit() {
+    return limit;
+  }
+
+  @Override
+  public void close() {
+    if (limit.getOverloads() > 0) {
+      logger.lifecycle("Nexus was overloaded {} times while publishing, concurrent uploads were reduced down to {}",
+          limit.getOverloads(), limit.getLowestLimit());
+    }
+  }
+}
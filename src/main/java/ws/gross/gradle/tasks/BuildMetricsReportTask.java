@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.tasks;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+import ws.gross.gradle.utils.BuildMetrics;
+import ws.gross.gradle.utils.BuildMetricsReport;
+
+@DisableCachingByDefault(because = "Prints recorded build metrics")
+public abstract class BuildMetricsReportTask extends DefaultTask {
+  public BuildMetricsReportTask() {
+    getOutputs().upToDateWhen(t -> false);
+  }
+
+  // store is appended by each build, so it's not an input
+  @Internal
+  public abstract RegularFileProperty getMetricsFile();
+
+  @TaskAction
+  void run() {
+    BuildMetricsReport report = new BuildMetricsReport(
+        BuildMetrics.read(getMetricsFile().get().getAsFile().toPath()), BuildMetricsReport.DEFAULT_WINDOW);
+    report.lines().forEach(getLogger()::lifecycle);
+  }
+}
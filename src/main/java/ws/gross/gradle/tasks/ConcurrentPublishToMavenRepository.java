@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.tasks;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+import ws.gross.gradle.impl.UploadThrottle;
+import ws.gross.gradle.utils.MavenMetadata;
+import ws.gross.gradle.utils.MavenRepositoryUploader;
+
+import static ws.gross.gradle.utils.StringUtils.capitalize;
+
+// Publishes files of a maven publication with several concurrent uploads,
+// metadata goes after all artifacts, so it never refers to files which aren't uploaded yet
+@DisableCachingByDefault(because = "Uploads to remote repository")
+public abstract class ConcurrentPublishToMavenRepository extends DefaultTask {
+  public ConcurrentPublishToMavenRepository() {
+    getMaxConnections().convention(MavenRepositoryUploader.DEFAULT_MAX_CONNECTIONS);
+    getMaxAttempts().convention(MavenRepositoryUploader.DEFAULT_MAX_ATTEMPTS);
+    getTimeout().convention(MavenRepositoryUploader.DEFAULT_TIMEOUT);
+    getSkipUnchanged().convention(false);
+  }
+
+  @Input
+  public abstract Property<String> getRepositoryUrl();
+
+  @Internal
+  public abstract Property<String> getUsername();
+
+  @Internal
+  public abstract Property<String> getPassword();
+
+  @Input
+  public abstract Property<String> getGroupId();
+
+  @Input
+  public abstract Property<String> getArtifactId();
+
+  @Input
+  public abstract Property<String> getVersion();
+
+  // `classifier:extension` to file, classifier is empty for the main artifact, pom and gradle module metadata
+  @Internal
+  public abstract MapProperty<String, File> getArtifacts();
+
+  // same files as artifacts, carries dependencies on tasks producing them
+  @InputFiles
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public abstract ConfigurableFileCollection getArtifactFiles();
+
+  @Internal
+  public abstract Property<Integer> getMaxConnections();
+
+  @Internal
+  public abstract Property<Integer> getMaxAttempts();
+
+  @Internal
+  public abstract Property<Duration> getTimeout();
+
+  @Internal
+  public abstract Property<Boolean> getSkipUnchanged();
+
+  // shared limit of concurrent requests adjusted to nexus responses, own connection pool only if absent
+  @Internal
+  public abstract Property<UploadThrottle> getThrottle();
+
+  // nexus `/service/rest/v1/components?repository=<name>` to upload all files with a single request, not used for snapshots
+  @Input
+  @Optional
+  public abstract Property<String> getComponentsUrl();
+
+  // registered next to `publish<Publication>PublicationTo<Repository>Repository`
+  public static String taskName(String publication, String repository) {
+    return "publish" + capitalize(publication) + "PublicationTo" + capitalize(repository) + "RepositoryConcurrently";
+  }
+
+  @TaskAction
+  void publish() {
+    MavenRepositoryUploader uploader = new MavenRepositoryUploader(
+        getRepositoryUrl().get(),
+        getUsername().getOrNull(),
+        getPassword().getOrNull(),
+        getMaxConnections().get(),
+        getMaxAttempts().get(),
+        getTimeout().get()
+    );
+    // unique snapshot file names differ on every publication, so there is nothing to compare with
+    uploader.setSkipUnchanged(getSkipUnchanged().get() && !MavenMetadata.isSnapshot(getVersion().get()));
+    if (getThrottle().isPresent()) {
+      uploader.setLimit(getThrottle().get().getLimit());
+    }
+
+    String groupId = getGroupId().get();
+    String artifactId = getArtifactId().get();
+    String version = getVersion().get();
+    String artifactPath = groupId.replace('.', '/') + "/" + artifactId;
+    String versionPath = artifactPath + "/" + version;
+    Instant now = Instant.now();
+
+    // unique snapshot files are named after the next build number, like `maven-publish` does
+    String fileVersion = version;
+    String timestamp = null;
+    int buildNumber = 0;
+    if (MavenMetadata.isSnapshot(version)) {
+      timestamp = MavenMetadata.snapshotTimestamp(now);
+      buildNumber = MavenMetadata.lastBuildNumber(
+          uploader.get(versionPath + "/" + MavenMetadata.FILE_NAME).orElse(null)) + 1;
+      fileVersion = MavenMetadata.timestampedVersion(version, timestamp, buildNumber);
+    }
+
+    Map<String, Path> files = new LinkedHashMap<>();
+    Map<String, String> artifactOfPath = new LinkedHashMap<>();
+    List<String> artifacts = new ArrayList<>(getArtifacts().get().keySet());
+    for (Map.Entry<String, File> e : getArtifacts().get().entrySet()) {
+      String[] parts = e.getKey().split(":", 2);
+      String classifier = parts[0].isEmpty() ? "" : "-" + parts[0];
+      String path = versionPath + "/" + artifactId + "-" + fileVersion + classifier + "." + parts[1];
+      files.put(path, e.getValue().toPath());
+      artifactOfPath.put(path, e.getKey());
+    }
+
+    long start = System.nanoTime();
+    if (getComponentsUrl().isPresent() && timestamp == null) {
+      Map<String, Path> changed = files;
+      if (uploader.isSkipUnchanged()) {
+        changed = uploader.changed(files);
+        uploader.setSkipUnchanged(false);
+      }
+      if (changed.isEmpty()) {
+        getLogger().lifecycle("{}:{}:{} is already published, {} unchanged files ({} bytes) aren't uploaded",
+            groupId, artifactId, version, uploader.getSkippedFiles(), uploader.getSkippedBytes());
+        return;
+      }
+
+      // nexus replaces the whole component with uploaded assets, so unchanged ones are sent too
+      Map<String, Path> assets = new LinkedHashMap<>();
+      files.forEach((path, file) -> assets.put(artifactOfPath.get(path), file));
+      if (uploader.uploadComponent(getComponentsUrl().get(), groupId, artifactId, version, assets, files)) {
+        getLogger().lifecycle("Published {}:{}:{} ({} files, {} bytes) with a single request in {} ms",
+            groupId, artifactId, version, uploader.getUploadedFiles(), uploader.getUploadedBytes(),
+            Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return;
+      }
+      getLogger().warn("Nexus components API isn't available at {}, uploading files one by one", getComponentsUrl().get());
+      files = changed;
+    }
+
+    getLogger().info("Uploading {} files of {}:{}:{} to {} with up to {} connections",
+        files.size(), groupId, artifactId, version, uploader.getRepositoryUrl(), getMaxConnections().get());
+    uploader.upload(files);
+
+    if (timestamp != null) {
+      uploader.put(versionPath + "/" + MavenMetadata.FILE_NAME,
+          MavenMetadata.snapshotMetadata(groupId, artifactId, version, timestamp, buildNumber, artifacts, now));
+    }
+    String metadataPath = artifactPath + "/" + MavenMetadata.FILE_NAME;
+    byte[] metadata = uploader.get(metadataPath).orElse(null);
+    // identical publication doesn't touch the repository at all
+    if (uploader.getUploadedFiles() == 0 && MavenMetadata.hasVersion(metadata, version)) {
+      getLogger().lifecycle("{}:{}:{} is already published, {} unchanged files ({} bytes) aren't uploaded",
+          groupId, artifactId, version, uploader.getSkippedFiles(), uploader.getSkippedBytes());
+      return;
+    }
+    uploader.put(metadataPath, MavenMetadata.artifactMetadata(metadata, groupId, artifactId, version, now));
+
+    getLogger().lifecycle("Published {}:{}:{} ({} files, {} bytes) in {} ms, {} unchanged files ({} bytes) skipped",
+        groupId, artifactId, version, uploader.getUploadedFiles(), uploader.getUploadedBytes(),
+        Duration.ofNanos(System.nanoTime() - start).toMillis(), uploader.getSkippedFiles(), uploader.getSkippedBytes());
+  }
+}
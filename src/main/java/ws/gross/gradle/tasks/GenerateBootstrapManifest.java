@@ -20,26 +20,41 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.internal.util.PropertiesUtils;
+import ws.gross.gradle.utils.GradleUtils;
+
+import static ws.gross.gradle.bootstrap.BootstrapManifest.CATALOG_CONTENT_KEY_PREFIX;
 
 public abstract class GenerateBootstrapManifest extends DefaultTask {
   @Input
   public abstract ListProperty<String> getPluginIds();
 
+  @Input
+  public abstract MapProperty<String, String> getPluginModules();
+
   @Input
   public abstract MapProperty<String, String> getCatalogIds();
 
@@ -50,6 +65,25 @@ public abstract class GenerateBootstrapManifest extends DefaultTask {
   @Optional
   public abstract Property<String> getManifestDescription();
 
+  @Internal
+  public abstract MapProperty<String, RegularFile> getInlineCatalogs();
+
+  @InputFiles
+  @PathSensitive(PathSensitivity.NONE)
+  public Provider<List<RegularFile>> getInlineCatalogFiles() {
+    return getInlineCatalogs().map(m -> new ArrayList<>(m.values()));
+  }
+
+  // file fingerprints alone don't track which alias each file belongs to
+  @Input
+  public Provider<Map<String, String>> getInlineCatalogChecksums() {
+    return getInlineCatalogs().map(m -> {
+      Map<String, String> result = new TreeMap<>();
+      m.forEach((alias, file) -> result.put(alias, GradleUtils.checksum(file.getAsFile().toPath(), "SHA-256")));
+      return result;
+    });
+  }
+
   @OutputFile
   public abstract RegularFileProperty getOutputFile();
 
@@ -62,15 +96,35 @@ public abstract class GenerateBootstrapManifest extends DefaultTask {
     properties.setProperty("catalogIds", catalogs.stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(",")));
     properties.setProperty("pluginIds", String.join(",", plugins));
     properties.setProperty("version", getVersion().get());
+
+    Map<String, String> pluginModules = new TreeMap<>(getPluginModules().get());
+    List<String> unknownPlugins = pluginModules.keySet().stream().filter(id -> !plugins.contains(id)).collect(Collectors.toList());
+    if (!unknownPlugins.isEmpty()) {
+      throw new GradleException("Plugin modules declared for plugins absent in pluginIds: " + String.join(", ", unknownPlugins));
+    }
+    if (!pluginModules.isEmpty()) {
+      properties.setProperty("pluginModules", pluginModules.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(",")));
+    }
     if (getManifestDescription().isPresent()) {
       properties.setProperty("description", getManifestDescription().get());
     }
 
+    Map<String, RegularFile> inlineCatalogs = new TreeMap<>(getInlineCatalogs().get());
+    for (Map.Entry<String, RegularFile> e : inlineCatalogs.entrySet()) {
+      if (!getCatalogIds().get().containsKey(e.getKey())) {
+        throw new GradleException("Inline catalog " + e.getKey() + " should be declared as a catalog in the manifest");
+      }
+      byte[] content = Files.readAllBytes(e.getValue().getAsFile().toPath());
+      properties.setProperty(CATALOG_CONTENT_KEY_PREFIX + e.getKey(), new String(content, StandardCharsets.UTF_8));
+    }
+
     getLogger().info("Writing manifest to {}", getOutputFile().get());
     getLogger().info("  catalogIgs = {}", catalogs.stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("\n  ")));
     getLogger().info("  pluginIds = {}", String.join("\n  ", plugins));
+    getLogger().info("  pluginModules = {}", pluginModules.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("\n  ")));
     getLogger().info("  version = {}", getVersion().get());
     getLogger().info("  description = {}", getManifestDescription().getOrElse("<none>"));
+    getLogger().info("  inline catalogs = {}", String.join(", ", inlineCatalogs.keySet()));
 
     try (OutputStream os = Files.newOutputStream(getOutputFile().get().getAsFile().toPath())) {
       PropertiesUtils.store(properties, os, null, StandardCharsets.UTF_8, "\n");
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.tasks;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.work.DisableCachingByDefault;
+import ws.gross.gradle.impl.RoutingRecorder;
+
+@DisableCachingByDefault(because = "Prints learned routing table")
+public abstract class RepositoryRoutingTask extends DefaultTask {
+  public RepositoryRoutingTask() {
+    getReset().convention(false);
+    getOutputs().upToDateWhen(t -> false);
+  }
+
+  @Internal
+  public abstract Property<RoutingRecorder> getRecorder();
+
+  @Input
+  @Option(option = "reset", description = "Forget learned repository routing")
+  public abstract Property<Boolean> getReset();
+
+  @TaskAction
+  void run() {
+    RoutingRecorder recorder = getRecorder().get();
+    if (recorder.getRouting().isEmpty()) {
+      getLogger().lifecycle("No learned repository routing");
+    } else {
+      recorder.getRouting().getRoutes().forEach((group, repos) -> {
+        getLogger().lifecycle("{} -> {}", group, String.join(", ", repos));
+      });
+    }
+
+    if (getReset().get()) {
+      recorder.reset();
+      getLogger().lifecycle("Learned repository routing reset");
+    }
+  }
+}
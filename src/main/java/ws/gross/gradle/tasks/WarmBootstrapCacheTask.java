@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.tasks;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.work.DisableCachingByDefault;
+
+// Resolves plugins and catalogs of bootstrap manifests into the module cache,
+// optionally copies the module cache in GRADLE_RO_DEP_CACHE layout
+@DisableCachingByDefault(because = "Fills Gradle module cache")
+public abstract class WarmBootstrapCacheTask extends DefaultTask {
+  public static final String MODULE_CACHE_PATH = "caches/modules-2";
+
+  public WarmBootstrapCacheTask() {
+    getOutputs().upToDateWhen(t -> false);
+  }
+
+  @Inject
+  protected abstract FileSystemOperations getFs();
+
+  // resolved lazily when task is executed
+  @Internal
+  public abstract ConfigurableFileCollection getPluginArtifacts();
+
+  @Internal
+  public abstract ConfigurableFileCollection getCatalogArtifacts();
+
+  // dependency graphs of plugins and catalogs, only their modules are copied to read-only cache
+  @Internal
+  public abstract ListProperty<ResolvedComponentResult> getResolvedModules();
+
+  @Internal
+  public abstract DirectoryProperty getModuleCache();
+
+  @Internal
+  public abstract DirectoryProperty getReadOnlyCache();
+
+  @Option(option = "read-only-cache", description = "Directory to write read-only dependency cache (GRADLE_RO_DEP_CACHE) to")
+  public void setReadOnlyCachePath(String path) {
+    getReadOnlyCache().set(getProject().getLayout().getProjectDirectory().dir(path));
+  }
+
+  @TaskAction
+  void run() {
+    int plugins = getPluginArtifacts().getFiles().size();
+    int catalogs = getCatalogArtifacts().getFiles().size();
+    getLogger().lifecycle("Prefetched {} plugin artifacts and {} catalogs", plugins, catalogs);
+
+    if (getReadOnlyCache().isPresent()) {
+      File target = getReadOnlyCache().get().dir("modules-2").getAsFile();
+      Set<ModuleComponentIdentifier> modules = modules(getResolvedModules().get());
+      // artifacts and descriptors of resolved modules with metadata indexes,
+      // lock files and gc state must not be a part of read-only cache
+      getFs().sync(spec -> {
+        spec.from(getModuleCache());
+        spec.into(target);
+        spec.include("metadata-*/*.bin");
+        modules.forEach(id -> {
+          String path = id.getGroup() + "/" + id.getModule() + "/" + id.getVersion() + "/**";
+          spec.include("files-*/" + path, "metadata-*/descriptors/" + path);
+        });
+        spec.exclude("**/*.lock", "**/gc.properties");
+      });
+      getLogger().lifecycle("Read-only dependency cache of {} modules written to {}, use it with GRADLE_RO_DEP_CACHE={}",
+          modules.size(), target, target.getParentFile());
+    }
+  }
+
+  // plugin markers have no artifacts, so modules are taken from the graph instead of resolved artifacts
+  private static Set<ModuleComponentIdentifier> modules(List<ResolvedComponentResult> roots) {
+    Set<ModuleComponentIdentifier> modules = new LinkedHashSet<>();
+    Set<ResolvedComponentResult> visited = new HashSet<>();
+    Deque<ResolvedComponentResult> queue = new ArrayDeque<>(roots);
+    while (!queue.isEmpty()) {
+      ResolvedComponentResult component = queue.poll();
+      if (!visited.add(component)) {
+        continue;
+      }
+      if (component.getId() instanceof ModuleComponentIdentifier) {
+        modules.add((ModuleComponentIdentifier) component.getId());
+      }
+      component.getDependencies().forEach(d -> {
+        if (d instanceof ResolvedDependencyResult) {
+          queue.add(((ResolvedDependencyResult) d).getSelected());
+        }
+      });
+    }
+    return modules;
+  }
+}
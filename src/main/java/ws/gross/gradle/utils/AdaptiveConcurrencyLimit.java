@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.utils;
+
+// AIMD limit of concurrent requests: grows by one request after `limit` successful ones, halves on overload
+// (429/503 or connection failure) and shrinks slightly when latency is well above usual for requests of similar size.
+// Requests started before the last decrease don't decrease it again, so a single burst of errors halves it once.
+public class AdaptiveConcurrencyLimit {
+  static final double DECREASE_FACTOR = 0.5;
+
+  static final double LATENCY_DECREASE_FACTOR = 0.9;
+
+  // latency above this multiple of the moving average signals congestion
+  static final double LATENCY_FACTOR = 3.0;
+
+  private static final double LATENCY_WEIGHT = 0.1;
+
+  private static final int WARMUP_SAMPLES = 10;
+
+  // Upper bounds of request size classes, each class has own latency average. Checksums and poms take a round trip,
+  // large jars are bound by bandwidth, so with a single average every jar among them would look like congestion.
+  static final long[] SIZE_CLASS_BOUNDS = {64 * 1024, 4 * 1024 * 1024};
+
+  private final int min;
+
+  private final int max;
+
+  private double limit;
+
+  private int inFlight = 0;
+
+  private final double[] averageLatencyNanos = new double[SIZE_CLASS_BOUNDS.length + 1];
+
+  private final int[] samples = new int[SIZE_CLASS_BOUNDS.length + 1];
+
+  private long lastDecreaseNanos = Long.MIN_VALUE;
+
+  private int overloads = 0;
+
+  private int lowestLimit;
+
+  public AdaptiveConcurrencyLimit(int initial, int min, int max) {
+    this.min = Math.max(1, min);
+    this.max = Math.max(this.min, max);
+    this.limit = Math.max(this.min, Math.min(this.max, initial));
+    this.lowestLimit = (int) limit;
+  }
+
+  // blocks while the limit is reached, returned start time is passed to release
+  public synchronized long acquire() throws InterruptedException {
+    while (inFlight >= (int) limit) {
+      wait();
+    }
+    inFlight++;
+    return System.nanoTime();
+  }
+
+  // bytes is the size of request body (or expected response), so latency is compared within its size class
+  public void release(long startNanos, long bytes, boolean overloaded) {
+    release(startNanos, System.nanoTime(), bytes, overloaded);
+  }
+
+  synchronized void release(long startNanos, long endNanos, long bytes, boolean overloaded) {
+    inFlight = Math.max(0, inFlight - 1);
+    long latency = endNanos - startNanos;
+    int sizeClass = sizeClass(bytes);
+    boolean stale = startNanos < lastDecreaseNanos;
+
+    if (overloaded) {
+      overloads++;
+      if (!stale) {
+        decrease(DECREASE_FACTOR, endNanos);
+      }
+    } else if (samples[sizeClass] >= WARMUP_SAMPLES && latency > LATENCY_FACTOR * averageLatencyNanos[sizeClass]) {
+      if (!stale) {
+        decrease(LATENCY_DECREASE_FACTOR, endNanos);
+      }
+    } else {
+      limit = Math.min(max, limit + 1.0 / limit);
+    }
+
+    if (!overloaded) {
+      double average = averageLatencyNanos[sizeClass];
+      averageLatencyNanos[sizeClass] = samples[sizeClass] == 0 ? latency : average + LATENCY_WEIGHT * (latency - average);
+      samples[sizeClass]++;
+    }
+    notifyAll();
+  }
+
+  static int sizeClass(long bytes) {
+    int i = 0;
+    while (i < SIZE_CLASS_BOUNDS.length && bytes >= SIZE_CLASS_BOUNDS[i]) {
+      i++;
+    }
+    return i;
+  }
+
+  private void decrease(double factor, long nowNanos) {
+    limit = Math.max(min, limit * factor);
+    lowestLimit = Math.min(lowestLimit, (int) limit);
+    lastDecreaseNanos = nowNanos;
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getLowestLimit() {
+    return lowestLimit;
+  }
+
+  public synchronized int getOverloads() {
+    return overloads;
+  }
+}
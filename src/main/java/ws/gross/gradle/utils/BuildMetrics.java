@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+// Compact per-build record of bootstrap phase, stored as a tab separated line in a rolling file
+public class BuildMetrics {
+  private static final Logger logger = Logging.getLogger(BuildMetrics.class);
+
+  public static final String METRICS_CACHE_PATH = "caches/private-repo/metrics";
+
+  public static final int DEFAULT_LIMIT = 500;
+
+  private static final int FIELDS = 9;
+
+  private static final String LOCK_SUFFIX = ".lock";
+
+  private final Instant timestamp;
+  private final long bootstrapMillis;
+  private final int manifests;
+  private final int plugins;
+  private final int catalogs;
+  private final int cacheHits;
+  private final int cacheMisses;
+  // build records are appended only when build is configured, so requested cache means its entry was stored
+  private final boolean configurationCacheRequested;
+  private final Map<String, String> manifestVersions;
+
+  public BuildMetrics(Instant timestamp, long bootstrapMillis, int manifests, int plugins, int catalogs,
+                      int cacheHits, int cacheMisses, boolean configurationCacheRequested, Map<String, String> manifestVersions) {
+    this.timestamp = timestamp;
+    this.bootstrapMillis = bootstrapMillis;
+    this.manifests = manifests;
+    this.plugins = plugins;
+    this.catalogs = catalogs;
+    this.cacheHits = cacheHits;
+    this.cacheMisses = cacheMisses;
+    this.configurationCacheRequested = configurationCacheRequested;
+    this.manifestVersions = Collections.unmodifiableMap(new TreeMap<>(manifestVersions));
+  }
+
+  public static Optional<BuildMetrics> parse(String line) {
+    String[] parts = line.split("\t", -1);
+    if (parts.length != FIELDS) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(new BuildMetrics(
+          Instant.ofEpochMilli(Long.parseLong(parts[0])),
+          Long.parseLong(parts[1]),
+          Integer.parseInt(parts[2]),
+          Integer.parseInt(parts[3]),
+          Integer.parseInt(parts[4]),
+          Integer.parseInt(parts[5]),
+          Integer.parseInt(parts[6]),
+          Boolean.parseBoolean(parts[7]),
+          parseVersions(parts[8])
+      ));
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  // version ranges may contain commas, so pairs are separated by spaces
+  private static Map<String, String> parseVersions(String value) {
+    Map<String, String> result = new TreeMap<>();
+    for (String pair : value.trim().split(" +")) {
+      int idx = pair.indexOf('=');
+      if (idx > 0) {
+        result.put(pair.substring(0, idx), pair.substring(idx + 1));
+      }
+    }
+    return result;
+  }
+
+  public String toLine() {
+    String versions = manifestVersions.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(" "));
+    return String.join("\t",
+        Long.toString(timestamp.toEpochMilli()),
+        Long.toString(bootstrapMillis),
+        Integer.toString(manifests),
+        Integer.toString(plugins),
+        Integer.toString(catalogs),
+        Integer.toString(cacheHits),
+        Integer.toString(cacheMisses),
+        Boolean.toString(configurationCacheRequested),
+        versions);
+  }
+
+  // unparseable lines are skipped, metrics are only informational
+  public static List<BuildMetrics> read(Path path) {
+    if (!Files.isRegularFile(path)) {
+      return Collections.emptyList();
+    }
+
+    try {
+      return Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+          .map(BuildMetrics::parse)
+          .filter(Optional::isPresent)
+          .map(Optional::get)
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      return Collections.emptyList();
+    }
+  }
+
+  // keeps only last `limit` records, file is replaced atomically so readers never see partial content;
+  // concurrent builds in the same directory are serialized by a lock file, so no records are lost;
+  // write failures don't fail the build
+  public static void append(Path path, BuildMetrics metrics, int limit) {
+    try {
+      Files.createDirectories(path.getParent());
+      // file locks are held by the whole JVM, so builds in the same daemon are serialized separately
+      synchronized (BuildMetrics.class) {
+        try (FileChannel channel = FileChannel.open(path.resolveSibling(path.getFileName() + LOCK_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+          FileLock lock = channel.lock();
+          try {
+            List<String> lines = new ArrayList<>();
+            read(path).forEach(m -> lines.add(m.toLine()));
+            lines.add(metrics.toLine());
+
+            Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Files.write(tmp, lines.subList(Math.max(0, lines.size() - limit), lines.size()), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          } finally {
+            lock.release();
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Build metrics aren't recorded, failed to write {}: {}", path, e.getMessage());
+    }
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public long getBootstrapMillis() {
+    return bootstrapMillis;
+  }
+
+  public int getManifests() {
+    return manifests;
+  }
+
+  public int getPlugins() {
+    return plugins;
+  }
+
+  public int getCatalogs() {
+    return catalogs;
+  }
+
+  public int getCacheHits() {
+    return cacheHits;
+  }
+
+  public int getCacheMisses() {
+    return cacheMisses;
+  }
+
+  public boolean isConfigurationCacheRequested() {
+    return configurationCacheRequested;
+  }
+
+  public Map<String, String> getManifestVersions() {
+    return manifestVersions;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Bootstrap time trends over recorded builds
+public class BuildMetricsReport {
+  public static final int DEFAULT_WINDOW = 20;
+
+  // bootstrap p50 after manifest version change should grow at least by this factor and by MIN_REGRESSION_MILLIS
+  public static final double REGRESSION_FACTOR = 1.5;
+
+  public static final long MIN_REGRESSION_MILLIS = 100;
+
+  private final List<BuildMetrics> records;
+  private final int window;
+
+  public BuildMetricsReport(List<BuildMetrics> records, int window) {
+    this.records = records;
+    this.window = window;
+  }
+
+  public List<String> lines() {
+    List<String> result = new ArrayList<>();
+    if (records.isEmpty()) {
+      result.add("No recorded builds");
+      return result;
+    }
+
+    result.add(String.format("Recorded builds: %d, bootstrap %s", records.size(), percentiles(records)));
+
+    int size = records.size();
+    List<BuildMetrics> last = records.subList(Math.max(0, size - window), size);
+    if (size > window) {
+      List<BuildMetrics> previous = records.subList(Math.max(0, size - 2 * window), size - window);
+      result.add(String.format("Last %d builds: bootstrap %s, previous %d builds: bootstrap %s",
+          last.size(), percentiles(last), previous.size(), percentiles(previous)));
+    }
+
+    BuildMetrics latest = records.get(size - 1);
+    result.add(String.format("Latest build: %d manifests, %d plugins, %d catalogs, manifest cache %d hits / %d misses, configuration cache %s",
+        latest.getManifests(), latest.getPlugins(), latest.getCatalogs(), latest.getCacheHits(), latest.getCacheMisses(),
+        latest.isConfigurationCacheRequested() ? "entry stored" : "not requested"));
+
+    result.addAll(regressions());
+    return result;
+  }
+
+  // compares runs of builds before and after each manifest versions change
+  public List<String> regressions() {
+    List<String> result = new ArrayList<>();
+    int start = 0;
+    for (int i = 1; i < records.size(); i++) {
+      Map<String, String> before = records.get(i - 1).getManifestVersions();
+      Map<String, String> after = records.get(i).getManifestVersions();
+      if (before.equals(after)) {
+        continue;
+      }
+
+      int end = i;
+      while (end < records.size() && end - i < window && records.get(end).getManifestVersions().equals(after)) {
+        end++;
+      }
+
+      long p50Before = percentile(records.subList(Math.max(start, i - window), i), 50);
+      long p50After = percentile(records.subList(i, end), 50);
+      if (p50After > p50Before * REGRESSION_FACTOR && p50After - p50Before >= MIN_REGRESSION_MILLIS) {
+        result.add(String.format("Regression: bootstrap p50 %d ms -> %d ms after manifest change at %s (%s -> %s)",
+            p50Before, p50After, records.get(i).getTimestamp(), format(before), format(after)));
+      }
+      start = i;
+    }
+    return result;
+  }
+
+  // nearest-rank percentile of bootstrap time
+  public static long percentile(List<BuildMetrics> records, int percentile) {
+    List<Long> values = records.stream()
+        .map(BuildMetrics::getBootstrapMillis)
+        .sorted()
+        .collect(Collectors.toList());
+    if (values.isEmpty()) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100.0 * values.size());
+    return values.get(Math.max(0, rank - 1));
+  }
+
+  private static String percentiles(List<BuildMetrics> records) {
+    return String.format("p50 %d ms, p95 %d ms", percentile(records, 50), percentile(records, 95));
+  }
+
+  private static String format(Map<String, String> versions) {
+    return versions.isEmpty() ? "none" : versions.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(", "));
+  }
+}
@@ -17,11 +17,16 @@
 package ws.gross.gradle.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -42,8 +47,8 @@ import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.authentication.http.BasicAuthentication;
 import org.gradle.internal.artifacts.repositories.AuthenticationSupportedInternal;
+import org.gradle.internal.util.PropertiesUtils;
 
-import static ws.gross.gradle.utils.StringUtils.capitalize;
 import static ws.gross.gradle.utils.StringUtils.toSnakeCase;
 
 public class GradleUtils {
@@ -59,14 +64,6 @@ public class GradleUtils {
     return (Action<T>) DO_NOTHING;
   }
 
-  public static String privateRepoPrefix(ProviderFactory providers) {
-    return rawGradlePropertyOrEnvVar(providers, "privateRepoPrefix").getOrElse("nexus");
-  }
-
-  public static Provider<String> gradlePropertyOrEnvVar(ProviderFactory providers, String name) {
-    return rawGradlePropertyOrEnvVar(providers, privateRepoPrefix(providers) + capitalize(name));
-  }
-
   public static Provider<String> rawGradlePropertyOrEnvVar(ProviderFactory providers, String name) {
     Provider<String> property = providers.gradleProperty(name);
     Provider<String> envVar = providers.environmentVariable(toSnakeCase(name).toUpperCase(Locale.ROOT));
@@ -117,6 +114,38 @@ public class GradleUtils {
     }
   }
 
+  public static void writeProperties(Path path, Properties properties) {
+    try {
+      Files.createDirectories(path.getParent());
+      Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try (OutputStream os = Files.newOutputStream(tmp)) {
+        PropertiesUtils.store(properties, os, null, StandardCharsets.UTF_8, "\n");
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new GradleException("Failed to write " + path, e);
+    }
+  }
+
+  public static String checksum(Path path, String algorithm) {
+    try (InputStream is = Files.newInputStream(path)) {
+      MessageDigest digest = MessageDigest.getInstance(algorithm);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new GradleException("Failed to calculate " + algorithm + " checksum of " + path, e);
+    }
+  }
+
   public static List<String> parseList(@Nullable String value) {
     return SPLIT_COMMA_PATTERN.splitAsStream(value == null ? "" : value)
         .map(String::trim)
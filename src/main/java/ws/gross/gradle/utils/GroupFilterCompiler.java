@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Merges groups (`com.example`), group prefixes (`com.example.*`, matches group itself and its subgroups)
+// and regexes into a single regex, so repository content filter checks one pattern instead of each group.
+// Groups and prefixes are factored by dot-separated segments: `com\.example\.(?:a|b(?:\..*)?)`.
+public class GroupFilterCompiler {
+  public static final String PREFIX_SUFFIX = ".*";
+
+  public static final int DEFAULT_THRESHOLD = 16;
+
+  private static final String REGEX_META_CHARS = "\\.[]{}()*+?^$|";
+
+  private final Node root = new Node();
+  private final Set<String> regexes = new LinkedHashSet<>();
+
+  public static Optional<String> compile(Collection<String> groups, Collection<String> regexes) {
+    GroupFilterCompiler compiler = new GroupFilterCompiler();
+    groups.forEach(compiler::group);
+    regexes.forEach(compiler::regex);
+    return compiler.compile();
+  }
+
+  // Gradle checks each group and regex separately on every lookup, so large lists are compiled into a single regex
+  public static void addFilters(
+      Collection<String> groups,
+      Collection<String> regexes,
+      int threshold,
+      Consumer<String> groupFilter,
+      Consumer<String> regexFilter
+  ) {
+    if (groups.size() + regexes.size() > threshold) {
+      compile(groups, regexes).ifPresent(regexFilter);
+      return;
+    }
+
+    groups.forEach(g -> {
+      if (g.endsWith(PREFIX_SUFFIX)) {
+        compile(Collections.singletonList(g), Collections.emptyList()).ifPresent(regexFilter);
+      } else {
+        groupFilter.accept(g);
+      }
+    });
+    regexes.forEach(regexFilter);
+  }
+
+  public GroupFilterCompiler group(String group) {
+    if (group.endsWith(PREFIX_SUFFIX)) {
+      node(group.substring(0, group.length() - PREFIX_SUFFIX.length())).prefix = true;
+    } else {
+      node(group).terminal = true;
+    }
+    return this;
+  }
+
+  public GroupFilterCompiler regex(String regex) {
+    regexes.add(regex);
+    return this;
+  }
+
+  public Optional<String> compile() {
+    Set<String> alternatives = new LinkedHashSet<>();
+    if (!root.children.isEmpty()) {
+      alternatives.add(children(root));
+    }
+    alternatives.addAll(regexes);
+
+    if (alternatives.isEmpty()) {
+      return Optional.empty();
+    } else if (alternatives.size() == 1) {
+      return Optional.of(alternatives.iterator().next());
+    }
+    return Optional.of(alternatives.stream().map(a -> "(?:" + a + ")").collect(Collectors.joining("|")));
+  }
+
+  private Node node(String group) {
+    Node node = root;
+    for (String segment : group.split("\\.", -1)) {
+      node = node.children.computeIfAbsent(segment, s -> new Node());
+    }
+    return node;
+  }
+
+  private static String children(Node node) {
+    String result = node.children.entrySet().stream()
+        .map(e -> quote(e.getKey()) + suffix(e.getValue()))
+        .collect(Collectors.joining("|"));
+    return node.children.size() == 1 ? result : "(?:" + result + ")";
+  }
+
+  private static String suffix(Node node) {
+    if (node.prefix) {
+      // subgroups are matched anyway
+      return "(?:\\..*)?";
+    } else if (node.children.isEmpty()) {
+      return "";
+    }
+
+    String rest = "\\." + children(node);
+    return node.terminal ? "(?:" + rest + ")?" : rest;
+  }
+
+  private static String quote(String segment) {
+    StringBuilder sb = new StringBuilder(segment.length());
+    for (char c : segment.toCharArray()) {
+      if (REGEX_META_CHARS.indexOf(c) >= 0) {
+        sb.append('\\');
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  private static class Node {
+    final Map<String, Node> children = new TreeMap<>();
+    boolean terminal;
+    boolean prefix;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+
+// List of groups hosted in private repositories: one group per line, `#` starts a comment
+public class GroupIndex {
+  private static final Pattern NEW_LINE_PATTERN = Pattern.compile("\r?\n");
+
+  private static final String URL_KEY = "url";
+  private static final String GROUPS_KEY = "groups";
+  private static final String TIMESTAMP_KEY = "timestamp";
+
+  private final List<String> groups;
+  private final Instant timestamp;
+
+  public GroupIndex(List<String> groups, Instant timestamp) {
+    this.groups = groups;
+    this.timestamp = timestamp;
+  }
+
+  public static List<String> parse(String content) {
+    return NEW_LINE_PATTERN.splitAsStream(content)
+        .map(l -> l.contains("#") ? l.substring(0, l.indexOf('#')) : l)
+        .map(String::trim)
+        .filter(l -> !l.isEmpty())
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  public static Optional<GroupIndex> read(Path path, String url) {
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    try {
+      Properties props = GradleUtils.readProperties(path);
+      if (!url.equals(props.getProperty(URL_KEY))) {
+        return Optional.empty();
+      }
+      return Optional.of(new GroupIndex(
+          GradleUtils.parseList(props.getProperty(GROUPS_KEY)),
+          Instant.ofEpochMilli(Long.parseLong(props.getProperty(TIMESTAMP_KEY)))
+      ));
+    } catch (GradleException | IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  public void write(Path path, String url) {
+    Properties props = new Properties();
+    props.setProperty(URL_KEY, url);
+    props.setProperty(GROUPS_KEY, String.join(",", groups));
+    props.setProperty(TIMESTAMP_KEY, Long.toString(timestamp.toEpochMilli()));
+    GradleUtils.writeProperties(path, props);
+  }
+
+  public List<String> getGroups() {
+    return groups;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public boolean isFresh(Duration ttl, Instant now) {
+    return timestamp.plus(ttl).isAfter(now);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+
+// Requests made to plugin managed repositories, grouped by repository and maven group
+public class HttpRequestLog {
+  public static final String LOG_PATH = "build/private-repo/http-requests.tsv";
+
+  // metadata requests (e.g. HEAD) don't tell if the resource is missing, so they are neither served nor missing
+  public enum Outcome {
+    OK, MISSING, FAILED, METADATA
+  }
+
+  // repository name to base url, longest matching url wins
+  private final Map<String, String> repositories = new TreeMap<>();
+
+  private final List<Request> requests = new ArrayList<>();
+
+  public synchronized void addRepository(String name, String url) {
+    repositories.put(name, url.endsWith("/") ? url : url + "/");
+  }
+
+  public synchronized void record(String url, Outcome outcome, long bytes, long millis) {
+    requests.add(new Request(url, outcome, bytes, millis));
+  }
+
+  public synchronized List<Request> getRequests() {
+    return new ArrayList<>(requests);
+  }
+
+  public synchronized Optional<String> repositoryOf(String url) {
+    return repositories.entrySet().stream()
+        .filter(e -> url.startsWith(e.getValue()))
+        .max(Comparator.comparingInt(e -> e.getValue().length()))
+        .map(Map.Entry::getKey);
+  }
+
+  public synchronized List<String> summary() {
+    Map<String, Stats> byRepo = new TreeMap<>();
+    Map<String, Map<String, Stats>> byGroup = new TreeMap<>();
+    requests.forEach(r -> repositoryOf(r.url).ifPresent(repo -> {
+      String group = groupOf(r.url.substring(repositories.get(repo).length()));
+      byRepo.computeIfAbsent(repo, k -> new Stats()).add(r);
+      byGroup.computeIfAbsent(group, k -> new TreeMap<>()).computeIfAbsent(repo, k -> new Stats()).add(r);
+    }));
+
+    List<String> result = new ArrayList<>();
+    if (byRepo.isEmpty()) {
+      result.add("No requests to configured repositories");
+      return result;
+    }
+
+    byRepo.forEach((repo, stats) -> result.add(repo + ": " + stats));
+    if (byRepo.values().stream().anyMatch(stats -> stats.metadata > 0)) {
+      result.add("Metadata requests don't report missing resources, so they aren't counted as missing");
+    }
+
+    // groups only missed by some repositories while served by others are candidates for group filters
+    byGroup.forEach((group, repos) -> {
+      Set<String> served = new TreeSet<>();
+      Set<String> missed = new TreeSet<>();
+      repos.forEach((repo, stats) -> {
+        if (stats.ok > 0) {
+          served.add(repo);
+        } else if (stats.missing > 0) {
+          missed.add(repo);
+        }
+      });
+
+      if (!missed.isEmpty()) {
+        int misses = missed.stream().mapToInt(repo -> repos.get(repo).missing).sum();
+        result.add(String.format("%s: %d missing in %s%s", group.isEmpty() ? "<unknown>" : group, misses,
+            String.join(", ", missed), served.isEmpty() ? "" : ", served by " + String.join(", ", served)));
+      }
+    });
+    return result;
+  }
+
+  public synchronized void write(Path path) {
+    List<String> lines = requests.stream()
+        .map(r -> String.join("\t", repositoryOf(r.url).orElse(""), r.url, r.outcome.name(),
+            Long.toString(r.bytes), Long.toString(r.millis)))
+        .collect(Collectors.toList());
+    try {
+      Files.createDirectories(path.getParent());
+      Files.write(path, lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new GradleException("Failed to write " + path, e);
+    }
+  }
+
+  // maven layout: group/module/version/file or group/module/maven-metadata.xml
+  static String groupOf(String path) {
+    List<String> segments = new ArrayList<>();
+    Collections.addAll(segments, path.split("/"));
+    segments.removeIf(String::isEmpty);
+
+    int n = segments.size();
+    int moduleSegments = 3;
+    if (n > 0 && segments.get(n - 1).startsWith("maven-metadata")) {
+      moduleSegments = n > 2 && segments.get(n - 2).endsWith("-SNAPSHOT") ? 3 : 2;
+    }
+    return n > moduleSegments ? String.join(".", segments.subList(0, n - moduleSegments)) : "";
+  }
+
+  public static class Request {
+    final String url;
+    final Outcome outcome;
+    final long bytes;
+    final long millis;
+
+    Request(String url, Outcome outcome, long bytes, long millis) {
+      this.url = url;
+      this.outcome = outcome;
+      this.bytes = bytes;
+      this.millis = millis;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    public Outcome getOutcome() {
+      return outcome;
+    }
+  }
+
+  private static class Stats {
+    int count;
+    int ok;
+    int missing;
+    int failed;
+    int metadata;
+    long bytes;
+    long millis;
+
+    void add(Request r) {
+      count++;
+      bytes += r.bytes;
+      millis += r.millis;
+      switch (r.outcome) {
+        case OK:
+          ok++;
+          break;
+        case MISSING:
+          missing++;
+          break;
+        case METADATA:
+          metadata++;
+          break;
+        default:
+          failed++;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%d requests (%d metadata), %d missing, %d failed, %.1f KiB, %d ms",
+          count, metadata, missing, failed, bytes / 1024.0, millis);
+    }
+  }
+}
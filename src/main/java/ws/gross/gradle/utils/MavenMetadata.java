@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.gradle.api.GradleException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+// maven-metadata.xml of an artifact (list of versions) and of a snapshot version (timestamped files),
+// same layout as produced by `maven-publish`
+public class MavenMetadata {
+  public static final String FILE_NAME = "maven-metadata.xml";
+
+  public static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+
+  private static final DateTimeFormatter SNAPSHOT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd.HHmmss").withZone(ZoneOffset.UTC);
+
+  private static final DateTimeFormatter LAST_UPDATED = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+  public static boolean isSnapshot(String version) {
+    return version.endsWith(SNAPSHOT_SUFFIX);
+  }
+
+  public static String snapshotTimestamp(Instant now) {
+    return SNAPSHOT_TIMESTAMP.format(now);
+  }
+
+  // `1.0-SNAPSHOT` to `1.0-20230101.120000-3`
+  public static String timestampedVersion(String version, String timestamp, int buildNumber) {
+    return version.substring(0, version.length() - SNAPSHOT_SUFFIX.length()) + "-" + timestamp + "-" + buildNumber;
+  }
+
+  // versions are kept in order of publication, the published one becomes latest (and release unless it's a snapshot)
+  public static byte[] artifactMetadata(@Nullable byte[] existing, String groupId, String artifactId, String version, Instant now) {
+    Set<String> versions = new LinkedHashSet<>();
+    String release = null;
+    if (existing != null) {
+      Document doc = parse(existing);
+      versions.addAll(texts(doc, "version", "versions"));
+      release = first(texts(doc, "release", "versioning"));
+    }
+    versions.add(version);
+    if (!isSnapshot(version)) {
+      release = version;
+    }
+
+    StringBuilder sb = header(groupId, artifactId, null);
+    sb.append("  <versioning>\n");
+    sb.append("    <latest>").append(escape(version)).append("</latest>\n");
+    if (release != null) {
+      sb.append("    <release>").append(escape(release)).append("</release>\n");
+    }
+    sb.append("    <versions>\n");
+    versions.forEach(v -> sb.append("      <version>").append(escape(v)).append("</version>\n"));
+    sb.append("    </versions>\n");
+    sb.append("    <lastUpdated>").append(LAST_UPDATED.format(now)).append("</lastUpdated>\n");
+    sb.append("  </versioning>\n");
+    sb.append("</metadata>\n");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static boolean hasVersion(@Nullable byte[] existing, String version) {
+    return existing != null && texts(parse(existing), "version", "versions").contains(version);
+  }
+
+  // build number of the last published snapshot, 0 if there are none
+  public static int lastBuildNumber(@Nullable byte[] existing) {
+    if (existing == null) {
+      return 0;
+    }
+    String value = first(texts(parse(existing), "buildNumber", "snapshot"));
+    try {
+      return value == null ? 0 : Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  // artifacts are `classifier:extension` pairs, classifier is empty for the main artifact
+  public static byte[] snapshotMetadata(
+      String groupId,
+      String artifactId,
+      String version,
+      String timestamp,
+      int buildNumber,
+      List<String> artifacts,
+      Instant now
+  ) {
+    String value = timestampedVersion(version, timestamp, buildNumber);
+    String lastUpdated = LAST_UPDATED.format(now);
+
+    StringBuilder sb = header(groupId, artifactId, version);
+    sb.append("  <versioning>\n");
+    sb.append("    <snapshot>\n");
+    sb.append("      <timestamp>").append(timestamp).append("</timestamp>\n");
+    sb.append("      <buildNumber>").append(buildNumber).append("</buildNumber>\n");
+    sb.append("    </snapshot>\n");
+    sb.append("    <lastUpdated>").append(lastUpdated).append("</lastUpdated>\n");
+    sb.append("    <snapshotVersions>\n");
+    artifacts.forEach(a -> {
+      String[] parts = a.split(":", 2);
+      sb.append("      <snapshotVersion>\n");
+      if (!parts[0].isEmpty()) {
+        sb.append("        <classifier>").append(escape(parts[0])).append("</classifier>\n");
+      }
+      sb.append("        <extension>").append(escape(parts[1])).append("</extension>\n");
+      sb.append("        <value>").append(escape(value)).append("</value>\n");
+      sb.append("        <updated>").append(lastUpdated).append("</updated>\n");
+      sb.append("      </snapshotVersion>\n");
+    });
+    sb.append("    </snapshotVersions>\n");
+    sb.append("  </versioning>\n");
+    sb.append("</metadata>\n");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static StringBuilder header(String groupId, String artifactId, @Nullable String version) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    sb.append("<metadata modelVersion=\"1.1.0\">\n");
+    sb.append("  <groupId>").append(escape(groupId)).append("</groupId>\n");
+    sb.append("  <artifactId>").append(escape(artifactId)).append("</artifactId>\n");
+    if (version != null) {
+      sb.append("  <version>").append(escape(version)).append("</version>\n");
+    }
+    return sb;
+  }
+
+  private static Document parse(byte[] content) {
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      return factory.newDocumentBuilder().parse(new ByteArrayInputStream(content));
+    } catch (ParserConfigurationException | SAXException | IOException e) {
+      throw new GradleException("Failed to parse " + FILE_NAME, e);
+    }
+  }
+
+  // text of elements with given name which are direct children of elements named parent
+  private static List<String> texts(Document doc, String name, String parent) {
+    List<String> result = new ArrayList<>();
+    NodeList nodes = doc.getElementsByTagName(name);
+    for (int i = 0; i < nodes.getLength(); i++) {
+      Element element = (Element) nodes.item(i);
+      if (element.getParentNode() != null && parent.equals(element.getParentNode().getNodeName())) {
+        result.add(element.getTextContent().trim());
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static String first(List<String> values) {
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  private static String escape(String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+}
@@ -0,0 +1,571 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+// Uploads files to a maven repository over a bounded number of concurrent connections,
+// each file is uploaded with its checksums and retried separately
+public class MavenRepositoryUploader {
+  private static final Logger logger = Logging.getLogger(MavenRepositoryUploader.class);
+
+  public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+
+  private static final Duration RETRY_DELAY = Duration.ofMillis(500);
+
+  private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+
+  // checksum file extension to digest algorithm, same set as uploaded by `maven-publish`
+  public static final Map<String, String> CHECKSUMS = new LinkedHashMap<>();
+
+  static {
+    CHECKSUMS.put("md5", "MD5");
+    CHECKSUMS.put("sha1", "SHA-1");
+    CHECKSUMS.put("sha256", "SHA-256");
+    CHECKSUMS.put("sha512", "SHA-512");
+  }
+
+  // checksums compared with remote ones in order of preference
+  private static final List<String> REMOTE_CHECKSUMS = Arrays.asList("sha256", "sha1");
+
+  private final String repositoryUrl;
+
+  @Nullable
+  private final String authorization;
+
+  private final int maxConnections;
+
+  private final int maxAttempts;
+
+  private final Duration timeout;
+
+  private boolean skipUnchanged = false;
+
+  @Nullable
+  private AdaptiveConcurrencyLimit limit;
+
+  private final AtomicInteger uploadedFiles = new AtomicInteger();
+
+  private final AtomicLong uploadedBytes = new AtomicLong();
+
+  private final AtomicInteger skippedFiles = new AtomicInteger();
+
+  private final AtomicLong skippedBytes = new AtomicLong();
+
+  public MavenRepositoryUploader(
+      String repositoryUrl,
+      @Nullable String username,
+      @Nullable String password,
+      int maxConnections,
+      int maxAttempts,
+      Duration timeout
+  ) {
+    this.repositoryUrl = repositoryUrl.endsWith("/") ? repositoryUrl.substring(0, repositoryUrl.length() - 1) : repositoryUrl;
+    this.authorization = username == null || password == null ? null
+        : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    this.maxConnections = Math.max(1, maxConnections);
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.timeout = timeout;
+  }
+
+  // remote path relative to repository url to local file, fails after all uploads are finished
+  public void upload(Map<String, Path> files) {
+    forEachConcurrently(files, "upload", (path, file) -> uploadFile(path, Body.of(file)));
+  }
+
+  // files which differ from the remote ones, skipped files are counted
+  public Map<String, Path> changed(Map<String, Path> files) {
+    Map<String, Path> result = new ConcurrentHashMap<>();
+    forEachConcurrently(files, "check", (path, file) -> {
+      Body body = Body.of(file);
+      if (isUnchanged(path, body)) {
+        skip(path, body);
+      } else {
+        result.put(path, file);
+      }
+    });
+    Map<String, Path> ordered = new LinkedHashMap<>();
+    files.forEach((path, file) -> {
+      if (result.containsKey(path)) {
+        ordered.put(path, file);
+      }
+    });
+    return ordered;
+  }
+
+  // Single multipart request to nexus components api, nexus calculates checksums and updates maven-metadata.xml itself.
+  // Assets are `classifier:extension` to file, false if the endpoint isn't available (not nexus 3 or disabled api).
+  // Files are the same assets by repository path, they are checked after a failed request.
+  public boolean uploadComponent(String componentsUrl, String groupId, String artifactId, String version,
+      Map<String, Path> assets, Map<String, Path> files) {
+    NexusComponentUpload upload = new NexusComponentUpload(groupId, artifactId, version, assets);
+    long start = System.nanoTime();
+    if (!postComponent(componentsUrl, upload, files)) {
+      return false;
+    }
+
+    assets.values().forEach(file -> {
+      uploadedFiles.incrementAndGet();
+      uploadedBytes.addAndGet(Body.of(file).length());
+    });
+    logger.info("Uploaded {} assets of {}:{}:{} to {} in {} ms", assets.size(), groupId, artifactId, version, componentsUrl,
+        Duration.ofNanos(System.nanoTime() - start).toMillis());
+    return true;
+  }
+
+  // POST isn't idempotent: nexus may store the component and fail afterwards (e.g. proxy timeout),
+  // and another upload of a release is rejected as redeploy. So the request is retried only if the component isn't stored.
+  private boolean postComponent(String componentsUrl, NexusComponentUpload upload, Map<String, Path> files) {
+    long bytes = files.values().stream().mapToLong(file -> Body.of(file).length()).sum();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return throttled(bytes, () -> {
+          HttpURLConnection conn = openUrl(componentsUrl, "POST");
+          try {
+            conn.setDoOutput(true);
+            conn.setChunkedStreamingMode(65536);
+            conn.setRequestProperty("Content-Type", upload.getContentType());
+            try (OutputStream os = conn.getOutputStream()) {
+              upload.writeTo(os);
+            }
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_BAD_METHOD
+                || code == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+              return false;
+            }
+            checkStatus("POST", componentsUrl, code, conn);
+            return true;
+          } finally {
+            conn.disconnect();
+          }
+        });
+      } catch (IOException e) {
+        if (isStored(files)) {
+          logger.info("POST {} failed ({}), but the component is stored", componentsUrl, e.getMessage());
+          return true;
+        }
+        if (attempt >= maxAttempts) {
+          throw new GradleException(String.format("POST %s failed after %d attempts: %s", componentsUrl, attempt, e.getMessage()), e);
+        }
+        long delay = retryDelayMillis(attempt, e instanceof HttpStatusException ? ((HttpStatusException) e).getRetryAfterMillis() : 0);
+        logger.info("POST {} failed ({}), component isn't stored, retrying in {} ms", componentsUrl, e.getMessage(), delay);
+        sleep("POST", componentsUrl, delay);
+      }
+    }
+  }
+
+  // every file has the same remote checksum
+  private boolean isStored(Map<String, Path> files) {
+    for (Map.Entry<String, Path> e : files.entrySet()) {
+      if (!isUnchanged(e.getKey(), Body.of(e.getValue()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void forEachConcurrently(Map<String, Path> files, String action, BiConsumer<String, Path> consumer) {
+    if (files.isEmpty()) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), maxConnections), r -> {
+      Thread t = new Thread(r, "private-repo-upload");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      List<CompletableFuture<Void>> futures = files.entrySet().stream()
+          .map(e -> CompletableFuture.runAsync(() -> consumer.accept(e.getKey(), e.getValue()), executor))
+          .collect(Collectors.toList());
+
+      List<String> failures = new ArrayList<>();
+      futures.forEach(f -> {
+        try {
+          f.join();
+        } catch (CompletionException e) {
+          failures.add(e.getCause().getMessage());
+        }
+      });
+      if (!failures.isEmpty()) {
+        throw new GradleException(String.format("Failed to %s %d of %d files in %s:%n  %s",
+            action, failures.size(), files.size(), repositoryUrl, String.join(System.lineSeparator() + "  ", failures)));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // metadata and other files which are always uploaded, not counted in upload stats
+  public void put(String path, byte[] content) {
+    sendWithChecksums(path, Body.of(content));
+  }
+
+  // empty if the file doesn't exist
+  public Optional<byte[]> get(String path) {
+    return withRetries("GET", path, 0, () -> {
+      HttpURLConnection conn = open(path, "GET");
+      try {
+        int code = conn.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+          return Optional.empty();
+        }
+        checkStatus("GET", path, code, conn);
+        try (InputStream is = conn.getInputStream()) {
+          ByteArrayOutputStream os = new ByteArrayOutputStream();
+          copy(is, os);
+          return Optional.of(os.toByteArray());
+        }
+      } finally {
+        conn.disconnect();
+      }
+    });
+  }
+
+  public String getRepositoryUrl() {
+    return repositoryUrl;
+  }
+
+  public boolean isSkipUnchanged() {
+    return skipUnchanged;
+  }
+
+  // compare with remote checksum before uploading, identical files aren't uploaded again
+  public void setSkipUnchanged(boolean skipUnchanged) {
+    this.skipUnchanged = skipUnchanged;
+  }
+
+  @Nullable
+  public AdaptiveConcurrencyLimit getLimit() {
+    return limit;
+  }
+
+  // limit shared with other uploaders, requests wait for it in addition to own connection pool
+  public void setLimit(@Nullable AdaptiveConcurrencyLimit limit) {
+    this.limit = limit;
+  }
+
+  // checksum and metadata files aren't counted
+  public int getUploadedFiles() {
+    return uploadedFiles.get();
+  }
+
+  public long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  public int getSkippedFiles() {
+    return skippedFiles.get();
+  }
+
+  public long getSkippedBytes() {
+    return skippedBytes.get();
+  }
+
+  private void uploadFile(String path, Body body) {
+    long start = System.nanoTime();
+    if (skipUnchanged && isUnchanged(path, body)) {
+      skip(path, body);
+      return;
+    }
+
+    sendWithChecksums(path, body);
+    uploadedFiles.incrementAndGet();
+    uploadedBytes.addAndGet(body.length());
+    logger.info("Uploaded {} ({} bytes) in {} ms", path, body.length(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+  }
+
+  private void skip(String path, Body body) {
+    skippedFiles.incrementAndGet();
+    skippedBytes.addAndGet(body.length());
+    logger.info("Skipped {} ({} bytes), remote checksum matches", path, body.length());
+  }
+
+  // checksums go after the file, so repository never has a checksum of a missing file
+  private void sendWithChecksums(String path, Body body) {
+    send(path, body);
+    CHECKSUMS.forEach((extension, algorithm) ->
+        send(path + "." + extension, Body.of(body.checksum(algorithm).getBytes(StandardCharsets.US_ASCII))));
+  }
+
+  // the strongest checksum present in repository wins, file without checksums is uploaded
+  private boolean isUnchanged(String path, Body body) {
+    for (String extension : REMOTE_CHECKSUMS) {
+      Optional<byte[]> remote = get(path + "." + extension);
+      if (remote.isPresent()) {
+        // some tools write `<checksum>  <file name>`
+        String[] parts = new String(remote.get(), StandardCharsets.US_ASCII).trim().split("\\s+");
+        return parts[0].equalsIgnoreCase(body.checksum(CHECKSUMS.get(extension)));
+      }
+    }
+    return false;
+  }
+
+  private void send(String path, Body body) {
+    withRetries("PUT", path, body.length(), () -> {
+      HttpURLConnection conn = open(path, "PUT");
+      try {
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(body.length());
+        try (InputStream is = body.open(); OutputStream os = conn.getOutputStream()) {
+          copy(is, os);
+        }
+        checkStatus("PUT", path, conn.getResponseCode(), conn);
+        return null;
+      } finally {
+        conn.disconnect();
+      }
+    });
+  }
+
+  private HttpURLConnection open(String path, String method) throws IOException {
+    return openUrl(repositoryUrl + "/" + path, method);
+  }
+
+  private HttpURLConnection openUrl(String url, String method) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    conn.setConnectTimeout((int) timeout.toMillis());
+    conn.setReadTimeout((int) timeout.toMillis());
+    conn.setRequestMethod(method);
+    if (authorization != null) {
+      conn.setRequestProperty("Authorization", authorization);
+    }
+    return conn;
+  }
+
+  // server errors and throttling are retried, other client errors fail immediately
+  // error message from response body helps with nexus validation errors, e.g. disallowed redeploy
+  private static void checkStatus(String method, String path, int code, HttpURLConnection conn) throws IOException {
+    if (code >= 200 && code < 300) {
+      return;
+    }
+    String message = String.format("%s %s: HTTP %d", method, path, code);
+    if (conn.getErrorStream() != null) {
+      try (InputStream is = conn.getErrorStream()) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        copy(is, os);
+        String body = new String(os.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (!body.isEmpty()) {
+          message += " " + (body.length() > 500 ? body.substring(0, 500) + "..." : body);
+        }
+      }
+    }
+    if (code >= 500 || code == 429) {
+      throw new HttpStatusException(message, code, retryAfterMillis(conn.getHeaderField("Retry-After")));
+    }
+    throw new GradleException(message);
+  }
+
+  // only delay in seconds is supported, http date is ignored
+  static long retryAfterMillis(@Nullable String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Math.min(MAX_RETRY_DELAY.toMillis(), Math.max(0, Long.parseLong(value.trim()) * 1000));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  // exponential backoff with jitter, so throttled uploads of parallel tasks don't come back in sync
+  static long retryDelayMillis(int attempt, long retryAfterMillis) {
+    long base = Math.min(MAX_RETRY_DELAY.toMillis(), RETRY_DELAY.toMillis() << Math.min(attempt - 1, 16));
+    long delay = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    return Math.max(delay, retryAfterMillis);
+  }
+
+  private <T> T withRetries(String method, String path, long bytes, IoCall<T> call) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return throttled(bytes, call);
+      } catch (IOException e) {
+        if (attempt >= maxAttempts) {
+          throw new GradleException(String.format("%s %s failed after %d attempts: %s", method, path, attempt, e.getMessage()), e);
+        }
+        long delay = retryDelayMillis(attempt, e instanceof HttpStatusException ? ((HttpStatusException) e).getRetryAfterMillis() : 0);
+        logger.info("{} {} failed ({}), retrying in {} ms", method, path, e.getMessage(), delay);
+        sleep(method, path, delay);
+      }
+    }
+  }
+
+  private static void sleep(String method, String path, long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException(method + " " + path + " interrupted", e);
+    }
+  }
+
+  // connection failures and 429/502/503/504 are reported to the limit as overload, other errors aren't
+  private <T> T throttled(long bytes, IoCall<T> call) throws IOException {
+    if (limit == null) {
+      return call.execute();
+    }
+
+    long start;
+    try {
+      start = limit.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while waiting for upload slot", e);
+    }
+    boolean overloaded = false;
+    try {
+      return call.execute();
+    } catch (HttpStatusException e) {
+      overloaded = e.isOverload();
+      throw e;
+    } catch (IOException e) {
+      overloaded = true;
+      throw e;
+    } finally {
+      limit.release(start, bytes, overloaded);
+    }
+  }
+
+  private static void copy(InputStream is, OutputStream os) throws IOException {
+    byte[] buffer = new byte[65536];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      os.write(buffer, 0, read);
+    }
+  }
+
+  private interface IoCall<T> {
+    T execute() throws IOException;
+  }
+
+  private static class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+    private final long retryAfterMillis;
+
+    HttpStatusException(String message, int code, long retryAfterMillis) {
+      super(message);
+      this.code = code;
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    boolean isOverload() {
+      return code == 429 || code == 502 || code == 503 || code == 504;
+    }
+
+    long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+  }
+
+  private abstract static class Body {
+    abstract long length();
+
+    abstract InputStream open() throws IOException;
+
+    abstract String checksum(String algorithm);
+
+    static Body of(Path path) {
+      return new Body() {
+        @Override
+        long length() {
+          try {
+            return Files.size(path);
+          } catch (IOException e) {
+            throw new GradleException("Failed to read " + path, e);
+          }
+        }
+
+        @Override
+        InputStream open() throws IOException {
+          return Files.newInputStream(path);
+        }
+
+        @Override
+        String checksum(String algorithm) {
+          return GradleUtils.checksum(path, algorithm);
+        }
+      };
+    }
+
+    static Body of(byte[] content) {
+      return new Body() {
+        @Override
+        long length() {
+          return content.length;
+        }
+
+        @Override
+        InputStream open() {
+          return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        String checksum(String algorithm) {
+          try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(content)) {
+              sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+          } catch (NoSuchAlgorithmException e) {
+            throw new GradleException("Failed to calculate " + algorithm + " checksum", e);
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// multipart/form-data body of nexus 3 `POST /service/rest/v1/components` for maven2 repositories
+class NexusComponentUpload {
+  private static final String CRLF = "\r\n";
+
+  private final String boundary = "private-repo-" + UUID.randomUUID();
+
+  private final Map<String, String> fields = new LinkedHashMap<>();
+
+  private final Map<String, Path> files = new LinkedHashMap<>();
+
+  // assets are `classifier:extension` to file, classifier is empty for the main artifact and pom
+  NexusComponentUpload(String groupId, String artifactId, String version, Map<String, Path> assets) {
+    // nexus takes coordinates from uploaded pom and refuses explicit ones
+    if (!assets.containsKey(":pom")) {
+      fields.put("maven2.groupId", groupId);
+      fields.put("maven2.artifactId", artifactId);
+      fields.put("maven2.version", version);
+      fields.put("maven2.generate-pom", "false");
+    }
+
+    int index = 1;
+    for (Map.Entry<String, Path> e : assets.entrySet()) {
+      String[] parts = e.getKey().split(":", 2);
+      String name = "maven2.asset" + index++;
+      files.put(name, e.getValue());
+      if (!parts[0].isEmpty()) {
+        fields.put(name + ".classifier", parts[0]);
+      }
+      fields.put(name + ".extension", parts[1]);
+    }
+  }
+
+  String getContentType() {
+    return "multipart/form-data; boundary=" + boundary;
+  }
+
+  Map<String, String> getFields() {
+    return fields;
+  }
+
+  void writeTo(OutputStream os) throws IOException {
+    for (Map.Entry<String, String> e : fields.entrySet()) {
+      write(os, "--" + boundary + CRLF
+                + "Content-Disposition: form-data; name=\"" + e.getKey() + "\"" + CRLF + CRLF
+                + e.getValue() + CRLF);
+    }
+    for (Map.Entry<String, Path> e : files.entrySet()) {
+      write(os, "--" + boundary + CRLF
+                + "Content-Disposition: form-data; name=\"" + e.getKey() + "\"; filename=\"" + e.getValue().getFileName() + "\"" + CRLF
+                + "Content-Type: application/octet-stream" + CRLF + CRLF);
+      Files.copy(e.getValue(), os);
+      write(os, CRLF);
+    }
+    write(os, "--" + boundary + "--" + CRLF);
+  }
+
+  private static void write(OutputStream os, String value) throws IOException {
+    os.write(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -17,17 +17,16 @@
 package ws.gross.gradle.utils;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 
+import org.gradle.StartParameter;
 import org.gradle.api.credentials.Credentials;
 import org.gradle.api.credentials.PasswordCredentials;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 
-import static ws.gross.gradle.utils.GradleUtils.gradlePropertyOrEnvVar;
-import static ws.gross.gradle.utils.GradleUtils.privateRepoPrefix;
-
 public class NexusConfiguration {
   public static final String NEXUS_REPO_NAME = "nexus";
 
@@ -35,6 +34,14 @@ public class NexusConfiguration {
 
   public static final String SNAPSHOTS_REPO_NAME = "nexusSnapshots";
 
+  public static final String MAVEN_CENTRAL_MIRROR_REPO_NAME = "nexusMavenCentral";
+
+  public static final String GRADLE_PLUGIN_PORTAL_MIRROR_REPO_NAME = "nexusGradlePluginPortal";
+
+  public static final String DEFAULT_MAVEN_CENTRAL_MIRROR = "maven-central";
+
+  public static final String DEFAULT_GRADLE_PLUGIN_PORTAL_MIRROR = "gradle-plugins";
+
   private final Provider<String> baseUrl;
   private final Provider<? extends Credentials> credentials;
   private final Provider<List<String>> defaultGroupRegex;
@@ -49,11 +56,10 @@ public class NexusConfiguration {
     this.defaultGroupRegex = defaultGroupRegex;
   }
 
-  public static NexusConfiguration from(ProviderFactory providers) {
-    Provider<String> baseUrl = gradlePropertyOrEnvVar(providers, "url");
+  public static NexusConfiguration from(PrivateRepoSettings settings, ProviderFactory providers, StartParameter startParameter) {
+    Provider<String> baseUrl = baseUrl(settings, providers, startParameter);
 
-    Boolean enabled = gradlePropertyOrEnvVar(providers, "defaultGroupRegex")
-        .map(Boolean::getBoolean).orElse(true).get();
+    boolean enabled = settings.getBoolean("defaultGroupRegex", true);
     Provider<String> regex = baseUrl.map(uri -> {
       String[] parts = URI.create(uri).getHost().split("\\.");
       if (parts.length < 2) {
@@ -68,11 +74,32 @@ public class NexusConfiguration {
     // TODO: support credentials from env vars
     return new NexusConfiguration(
         baseUrl,
-        providers.credentials(PasswordCredentials.class, privateRepoPrefix(providers)),
+        providers.credentials(PasswordCredentials.class, settings.getPrefix()),
         defaultGroupRegex
     );
   }
 
+  // `nexusUrl` may list several replicas, the fastest one is used
+  @SuppressWarnings("UnstableApiUsage")
+  private static Provider<String> baseUrl(PrivateRepoSettings settings, ProviderFactory providers, StartParameter startParameter) {
+    List<String> urls = settings.getList("url", Collections.emptyList());
+    if (urls.size() < 2) {
+      return providers.provider(() -> urls.isEmpty() ? null : urls.get(0));
+    }
+
+    long ttl = settings.getLong("urlSelectionTtl", NexusMirrors.DEFAULT_TTL.toMinutes());
+    long timeout = settings.getLong("urlSelectionTimeout", NexusMirrors.DEFAULT_TIMEOUT.toMillis());
+    return providers.of(NexusMirrors.Source.class, spec -> {
+      NexusMirrors.Source.Params params = spec.getParameters();
+      params.getUrls().set(urls);
+      params.getCacheDir().set(startParameter.getGradleUserHomeDir().toPath().resolve(NexusMirrors.MIRROR_CACHE_PATH).toFile());
+      params.getTtlMinutes().set(ttl);
+      params.getTimeoutMillis().set(timeout);
+      params.getOffline().set(startParameter.isOffline());
+      params.getRefresh().set(startParameter.isRefreshDependencies());
+    });
+  }
+
   public Provider<String> getBaseUrl() {
     return baseUrl;
   }
@@ -85,6 +112,10 @@ public class NexusConfiguration {
     return defaultGroupRegex;
   }
 
+  public Provider<String> repoUrl(String repoPath) {
+    return baseUrl.map(url -> url + "/repository/" + repoPath);
+  }
+
   public Provider<String> repoUrl(Provider<String> repoPath) {
     return baseUrl.flatMap(url -> repoPath.map(it -> url + "/repository/" + it));
   }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+// Selection of the fastest of regional nexus replicas listed in `nexusUrl`, choice is cached for a while
+public class NexusMirrors {
+  private static final Logger logger = Logging.getLogger(NexusMirrors.class);
+
+  public static final String MIRROR_CACHE_PATH = "caches/private-repo/nexus-mirror";
+
+  public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+
+  private static final String URLS_KEY = "urls";
+  private static final String SELECTED_KEY = "selected";
+  private static final String TIMESTAMP_KEY = "timestamp";
+
+  // fastest healthy mirror, primary (first) one if none is healthy;
+  // a replica answering quickly with 5xx or 401/403 is reachable, but must not be selected
+  public static String select(List<RepositoryHealthProbe.Result> results, List<String> urls) {
+    return fastestHealthy(results).orElse(urls.get(0));
+  }
+
+  private static Optional<String> fastestHealthy(List<RepositoryHealthProbe.Result> results) {
+    return results.stream()
+        .filter(RepositoryHealthProbe.Result::isHealthy)
+        .min(Comparator.comparingLong(RepositoryHealthProbe.Result::getMillis))
+        .map(RepositoryHealthProbe.Result::getUrl);
+  }
+
+  public static Optional<String> readCached(Path path, List<String> urls, Duration ttl, Instant now, boolean ignoreTtl) {
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    try {
+      Properties props = GradleUtils.readProperties(path);
+      String selected = props.getProperty(SELECTED_KEY);
+      if (!String.join(",", urls).equals(props.getProperty(URLS_KEY)) || selected == null || !urls.contains(selected)) {
+        return Optional.empty();
+      }
+
+      Instant timestamp = Instant.ofEpochMilli(Long.parseLong(props.getProperty(TIMESTAMP_KEY, "0")));
+      return ignoreTtl || timestamp.plus(ttl).isAfter(now) ? Optional.of(selected) : Optional.empty();
+    } catch (GradleException | NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  public static void writeCached(Path path, List<String> urls, String selected, Instant now) {
+    Properties props = new Properties();
+    props.setProperty(URLS_KEY, String.join(",", urls));
+    props.setProperty(SELECTED_KEY, selected);
+    props.setProperty(TIMESTAMP_KEY, Long.toString(now.toEpochMilli()));
+    GradleUtils.writeProperties(path, props);
+  }
+
+  // Obtained through ValueSource, so configuration cache is invalidated when another mirror is selected
+  public abstract static class Source implements ValueSource<String, Source.Params> {
+    public interface Params extends ValueSourceParameters {
+      ListProperty<String> getUrls();
+
+      DirectoryProperty getCacheDir();
+
+      Property<Long> getTtlMinutes();
+
+      Property<Long> getTimeoutMillis();
+
+      Property<Boolean> getOffline();
+
+      Property<Boolean> getRefresh();
+    }
+
+    @Override
+    public String obtain() {
+      Params params = getParameters();
+      List<String> urls = params.getUrls().get();
+      Path cachePath = params.getCacheDir().get().getAsFile().toPath()
+          .resolve(Integer.toHexString(String.join(",", urls).hashCode()) + ".properties");
+
+      boolean offline = params.getOffline().get();
+      Optional<String> cached = params.getRefresh().get() ? Optional.empty()
+          : readCached(cachePath, urls, Duration.ofMinutes(params.getTtlMinutes().get()), Instant.now(), offline);
+      if (cached.isPresent()) {
+        logger.info("Using previously selected nexus mirror {}", cached.get());
+        return cached.get();
+      }
+
+      if (offline) {
+        return urls.get(0);
+      }
+
+      Map<String, String> targets = new LinkedHashMap<>();
+      urls.forEach(url -> targets.put(url, url));
+      List<RepositoryHealthProbe.Result> results =
+          new RepositoryHealthProbe(Duration.ofMillis(params.getTimeoutMillis().get()), null, null, null).probe(targets);
+      results.forEach(r -> logger.info("Nexus mirror {}", r));
+
+      Optional<String> healthy = fastestHealthy(results);
+      if (!healthy.isPresent()) {
+        // not cached, so selection is retried on the next build instead of sticking to primary for ttl
+        logger.warn("No healthy nexus mirror among {}, using primary {}", urls, urls.get(0));
+        return urls.get(0);
+      }
+
+      logger.info("Selected nexus mirror {}", healthy.get());
+      writeCached(cachePath, urls, healthy.get(), Instant.now());
+      return healthy.get();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static ws.gross.gradle.utils.StringUtils.toUpperCamelCase;
+
+// Additional nexus repository serving only its own groups, e.g. hosted repo instead of a large group repo
+public class NexusRepository {
+  private final String name;
+  private final String path;
+  private final List<String> groups;
+  private final List<String> groupRegexes;
+  private final boolean exclusive;
+
+  public NexusRepository(String name, String path, List<String> groups, List<String> groupRegexes, boolean exclusive) {
+    this.name = name;
+    this.path = path;
+    this.groups = groups;
+    this.groupRegexes = groupRegexes;
+    this.exclusive = exclusive;
+  }
+
+  public static List<NexusRepository> from(PrivateRepoSettings settings) {
+    return settings.getList("repositories", Collections.emptyList())
+        .stream()
+        .map(path -> of(settings, path))
+        .collect(Collectors.toList());
+  }
+
+  private static NexusRepository of(PrivateRepoSettings settings, String path) {
+    String prefix = "repository" + toUpperCamelCase(path);
+    return new NexusRepository(
+        NexusConfiguration.NEXUS_REPO_NAME + toUpperCamelCase(path),
+        path,
+        settings.getList(prefix + "Groups", Collections.emptyList()),
+        settings.getList(prefix + "GroupRegexes", Collections.emptyList()),
+        settings.getBoolean(prefix + "Exclusive", false)
+    );
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public List<String> getGroups() {
+    return groups;
+  }
+
+  public List<String> getGroupRegexes() {
+    return groupRegexes;
+  }
+
+  public boolean isExclusive() {
+    return exclusive;
+  }
+}
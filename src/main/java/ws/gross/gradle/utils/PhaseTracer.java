@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import org.gradle.api.GradleException;
+
+// Records wall time and allocated bytes of plugin phases as Chrome trace events (chrome://tracing, ui.perfetto.dev)
+public class PhaseTracer {
+  public static final String TRACE_PATH = "build/private-repo/trace.json";
+
+  private static final PhaseTracer NOOP = new PhaseTracer(false);
+
+  private final boolean enabled;
+  private final long origin = System.nanoTime();
+  private final List<Event> events = new ArrayList<>();
+
+  private PhaseTracer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public static PhaseTracer create(boolean enabled) {
+    return enabled ? new PhaseTracer(true) : NOOP;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void trace(String name, Runnable action) {
+    trace(name, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  public <T> T trace(String name, Supplier<T> action) {
+    if (!enabled) {
+      return action.get();
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long startBytes = allocatedBytes(threadId);
+    long start = System.nanoTime();
+    try {
+      return action.get();
+    } finally {
+      long duration = System.nanoTime() - start;
+      long bytes = startBytes < 0 ? -1 : allocatedBytes(threadId) - startBytes;
+      synchronized (events) {
+        events.add(new Event(name, threadId, start - origin, duration, bytes));
+      }
+    }
+  }
+
+  // total time of phases with given name prefix, nested phases are expected to have other names
+  public long totalNanos(String namePrefix) {
+    synchronized (events) {
+      return events.stream().filter(e -> e.name.startsWith(namePrefix)).mapToLong(e -> e.durationNanos).sum();
+    }
+  }
+
+  public void write(Path path) {
+    if (!enabled) {
+      return;
+    }
+
+    try {
+      Files.createDirectories(path.getParent());
+      try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        w.write("{\"traceEvents\":[");
+        synchronized (events) {
+          for (int i = 0; i < events.size(); i++) {
+            w.write(i == 0 ? "\n" : ",\n");
+            w.write(events.get(i).toJson());
+          }
+        }
+        w.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+      }
+    } catch (IOException e) {
+      throw new GradleException("Failed to write " + path, e);
+    }
+  }
+
+  private static long allocatedBytes(long threadId) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(threadId);
+      }
+    }
+    return -1;
+  }
+
+  private static class Event {
+    final String name;
+    final long threadId;
+    final long startNanos;
+    final long durationNanos;
+    final long allocatedBytes;
+
+    Event(String name, long threadId, long startNanos, long durationNanos, long allocatedBytes) {
+      this.name = name;
+      this.threadId = threadId;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    // complete event, timestamps in microseconds
+    String toJson() {
+      return String.format(Locale.ROOT, "{\"name\":\"%s\",\"cat\":\"private-repo\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,"
+                           + "\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"allocatedBytes\":%d}}",
+          StringUtils.escapeJson(name), threadId, startNanos / 1000.0, durationNanos / 1000.0, allocatedBytes);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.gradle.api.GradleException;
+
+// `group:module:version` coordinates to prefetch, taken from dependency lockfiles or modules resolved by previous build
+public class PrefetchModules {
+  public static final String RESOLVED_MODULES_PATH = ".gradle/private-repo/resolved-modules.txt";
+
+  public static final List<String> LOCKFILE_NAMES = Arrays.asList(
+      "gradle.lockfile", "buildscript-gradle.lockfile", "settings-gradle.lockfile");
+
+  // built-in tasks which don't resolve project dependencies, so there is nothing to prefetch for
+  public static final Set<String> NON_RESOLVING_TASKS = new TreeSet<>(Arrays.asList(
+      "help", "tasks", "projects", "properties", "clean", "wrapper", "init", "javaToolchains"));
+
+  private static final String EMPTY_LOCKFILE_ENTRY = "empty=";
+
+  // lockfile entries look like `group:module:version=configuration1,configuration2`
+  public static Set<String> parseLockfile(Collection<String> lines) {
+    Set<String> result = new TreeSet<>();
+    lines.stream()
+        .map(String::trim)
+        .filter(l -> !l.isEmpty() && !l.startsWith("#") && !l.startsWith(EMPTY_LOCKFILE_ENTRY))
+        .map(l -> l.contains("=") ? l.substring(0, l.indexOf('=')) : l)
+        .filter(m -> m.split(":").length == 3)
+        .forEach(result::add);
+    return result;
+  }
+
+  public static Set<String> readLockfiles(Collection<Path> projectDirs) {
+    Set<String> result = new TreeSet<>();
+    projectDirs.forEach(dir -> LOCKFILE_NAMES.forEach(name -> {
+      Path lockfile = dir.resolve(name);
+      if (Files.isRegularFile(lockfile)) {
+        result.addAll(parseLockfile(readLines(lockfile)));
+      }
+    }));
+    return result;
+  }
+
+  // Task names as passed on command line, Gradle runs `help` when nothing is requested.
+  // Abbreviated names and task option values can't be told apart without the task graph,
+  // so they are assumed to resolve dependencies. It only costs an unneeded prefetch.
+  public static boolean resolvesDependencies(Collection<String> taskNames) {
+    return taskNames.stream()
+        .filter(t -> !t.startsWith("-"))
+        .map(t -> t.substring(t.lastIndexOf(':') + 1))
+        .anyMatch(t -> !NON_RESOLVING_TASKS.contains(t));
+  }
+
+  public static Set<String> readResolved(Path path) {
+    Set<String> result = new TreeSet<>();
+    if (Files.isRegularFile(path)) {
+      readLines(path).stream().map(String::trim).filter(l -> !l.isEmpty()).forEach(result::add);
+    }
+    return result;
+  }
+
+  public static void writeResolved(Path path, Collection<String> modules) {
+    try {
+      Files.createDirectories(path.getParent());
+      Files.write(path, new TreeSet<>(modules), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new GradleException("Failed to write " + path, e);
+    }
+  }
+
+  private static List<String> readLines(Path path) {
+    try {
+      return Files.readAllLines(path, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new GradleException("Failed to read " + path, e);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import static ws.gross.gradle.utils.StringUtils.capitalize;
+import static ws.gross.gradle.utils.StringUtils.toSnakeCase;
+
+// Snapshot of all `nexus*` gradle properties and `NEXUS_*` env vars (prefix is configurable via `privateRepoPrefix`).
+// Read through a single ValueSource, so configuration cache fingerprint doesn't grow with each property lookup.
+public class PrivateRepoSettings implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final String DEFAULT_PREFIX = "nexus";
+
+  // passwords are read only via credentials provider, so they are not a part of the snapshot
+  private static final String PASSWORD_SUFFIX = "Password";
+
+  private final String prefix;
+  private final Map<String, String> properties;
+  private final Map<String, String> environment;
+
+  public PrivateRepoSettings(String prefix, Map<String, String> properties, Map<String, String> environment) {
+    this.prefix = prefix;
+    this.properties = Collections.unmodifiableMap(new TreeMap<>(properties));
+    this.environment = Collections.unmodifiableMap(new TreeMap<>(environment));
+  }
+
+  @SuppressWarnings("UnstableApiUsage")
+  public static PrivateRepoSettings from(ProviderFactory providers) {
+    String prefix = GradleUtils.rawGradlePropertyOrEnvVar(providers, "privateRepoPrefix").getOrElse(DEFAULT_PREFIX);
+    return providers.of(Source.class, spec -> {
+      Source.Params params = spec.getParameters();
+      params.getPrefix().set(prefix);
+      params.getProperties().set(providers.gradlePropertiesPrefixedBy(prefix));
+      params.getEnvironment().set(providers.environmentVariablesPrefixedBy(envVarName(prefix)));
+    }).get();
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public Optional<String> getString(String name) {
+    String property = prefix + capitalize(name);
+    String value = properties.get(property);
+    return Optional.ofNullable(value != null ? value : environment.get(envVarName(property)));
+  }
+
+  public String getString(String name, String defaultValue) {
+    return getString(name).orElse(defaultValue);
+  }
+
+  public boolean getBoolean(String name, boolean defaultValue) {
+    return getString(name).map(Boolean::valueOf).orElse(defaultValue);
+  }
+
+  public int getInt(String name, int defaultValue) {
+    return getString(name).map(v -> parse(name, v, Integer::valueOf)).orElse(defaultValue);
+  }
+
+  public long getLong(String name, long defaultValue) {
+    return getString(name).map(v -> parse(name, v, Long::valueOf)).orElse(defaultValue);
+  }
+
+  public Optional<List<String>> getList(String name) {
+    return getString(name).map(GradleUtils::parseList);
+  }
+
+  public List<String> getList(String name, List<String> defaultValue) {
+    return getList(name).orElse(defaultValue);
+  }
+
+  private <T> T parse(String name, String value, Function<String, T> parser) {
+    try {
+      return parser.apply(value.trim());
+    } catch (NumberFormatException e) {
+      throw new GradleException(String.format("Invalid value '%s' of %s%s", value, prefix, capitalize(name)));
+    }
+  }
+
+  private static String envVarName(String name) {
+    return toSnakeCase(name).toUpperCase(Locale.ROOT);
+  }
+
+  public abstract static class Source implements ValueSource<PrivateRepoSettings, Source.Params> {
+    public interface Params extends ValueSourceParameters {
+      Property<String> getPrefix();
+
+      MapProperty<String, String> getProperties();
+
+      MapProperty<String, String> getEnvironment();
+    }
+
+    @Override
+    public PrivateRepoSettings obtain() {
+      String prefix = getParameters().getPrefix().get();
+      Map<String, String> properties = new TreeMap<>(getParameters().getProperties().get());
+      Map<String, String> environment = new TreeMap<>(getParameters().getEnvironment().get());
+      properties.keySet().removeIf(k -> k.endsWith(PASSWORD_SUFFIX));
+      environment.keySet().removeIf(k -> k.endsWith(envVarName(PASSWORD_SUFFIX)));
+      return new PrivateRepoSettings(prefix, properties, environment);
+    }
+  }
+}
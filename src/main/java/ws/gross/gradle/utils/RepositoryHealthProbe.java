@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+// Probes repository urls concurrently with short timeouts, so degraded nexus is detected before dependency resolution
+public class RepositoryHealthProbe {
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(3);
+
+  private static final int MAX_THREADS = 8;
+
+  private final Duration timeout;
+
+  @Nullable
+  private final String authorization;
+
+  // credentials are sent only to urls with this prefix
+  @Nullable
+  private final String authorizedPrefix;
+
+  public RepositoryHealthProbe(Duration timeout, @Nullable String authorizedPrefix, @Nullable String username, @Nullable String password) {
+    this.timeout = timeout;
+    this.authorizedPrefix = authorizedPrefix;
+    this.authorization = username == null || password == null ? null
+        : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+  }
+
+  // repository name to url, results are in the same order
+  public List<Result> probe(Map<String, String> repositories) {
+    if (repositories.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(repositories.size(), MAX_THREADS), r -> {
+      Thread t = new Thread(r, "private-repo-health-probe");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      List<CompletableFuture<Result>> futures = repositories.entrySet().stream()
+          .map(e -> CompletableFuture.supplyAsync(() -> probe(e.getKey(), e.getValue()), executor))
+          .collect(Collectors.toList());
+      return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Result probe(String name, String url) {
+    long start = System.nanoTime();
+    HttpURLConnection conn = null;
+    try {
+      conn = (HttpURLConnection) new URL(url.endsWith("/") ? url : url + "/").openConnection();
+      conn.setConnectTimeout((int) timeout.toMillis());
+      conn.setReadTimeout((int) timeout.toMillis());
+      conn.setRequestMethod("HEAD");
+      conn.setInstanceFollowRedirects(false);
+      if (authorization != null && authorizedPrefix != null && url.startsWith(authorizedPrefix)) {
+        conn.setRequestProperty("Authorization", authorization);
+      }
+
+      int code = conn.getResponseCode();
+      long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+      if (code == HttpURLConnection.HTTP_UNAUTHORIZED || code == HttpURLConnection.HTTP_FORBIDDEN) {
+        return new Result(name, url, true, false, "HTTP " + code + ", check credentials", millis);
+      } else if (code >= 500) {
+        return new Result(name, url, true, false, "HTTP " + code, millis);
+      }
+      // 404 on repository root is fine, e.g. when browsing is disabled
+      return new Result(name, url, true, true, "HTTP " + code, millis);
+    } catch (IOException | ClassCastException e) {
+      long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+      return new Result(name, url, false, false, e.getClass().getSimpleName() + ": " + e.getMessage(), millis);
+    } finally {
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+  }
+
+  public static class Result {
+    private final String name;
+    private final String url;
+    private final boolean reachable;
+    private final boolean healthy;
+    private final String message;
+    private final long millis;
+
+    public Result(String name, String url, boolean reachable, boolean healthy, String message, long millis) {
+      this.name = name;
+      this.url = url;
+      this.reachable = reachable;
+      this.healthy = healthy;
+      this.message = message;
+      this.millis = millis;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    // got any http response
+    public boolean isReachable() {
+      return reachable;
+    }
+
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public long getMillis() {
+      return millis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s(%s): %s in %d ms", name, url, message, millis);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+
+// Learned module to repositories table, stored as `group:module=repo1,repo2@learnedAtMillis` properties.
+// Modules are learned separately, so a wrong sample doesn't affect the rest of the group,
+// and entries expire after ttl to be learned again with all repositories.
+public class RepositoryRouting {
+  public static final String ROUTING_PATH = ".gradle/private-repo/routing.properties";
+
+  public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+
+  private static final String TIMESTAMP_SEPARATOR = "@";
+
+  private final Map<String, Route> routes = new TreeMap<>();
+
+  public static RepositoryRouting read(Path path, Duration ttl) {
+    return read(path, ttl, Instant.now());
+  }
+
+  static RepositoryRouting read(Path path, Duration ttl, Instant now) {
+    RepositoryRouting result = new RepositoryRouting();
+    if (!Files.isRegularFile(path)) {
+      return result;
+    }
+
+    try {
+      Properties props = GradleUtils.readProperties(path);
+      props.stringPropertyNames().forEach(module -> {
+        String value = props.getProperty(module);
+        int idx = value.lastIndexOf(TIMESTAMP_SEPARATOR);
+        // entries of older group based format have neither module nor timestamp
+        if (module.indexOf(':') < 0 || idx < 0) {
+          return;
+        }
+        Instant learned = Instant.ofEpochMilli(Long.parseLong(value.substring(idx + 1)));
+        if (learned.plus(ttl).isAfter(now)) {
+          GradleUtils.parseList(value.substring(0, idx)).forEach(repo -> result.record(module, repo, learned));
+        }
+      });
+    } catch (GradleException | NumberFormatException e) {
+      // learned data is only an optimization, so start from scratch
+      result.clear();
+    }
+    return result;
+  }
+
+  public synchronized void write(Path path) {
+    Properties props = new Properties();
+    routes.forEach((module, route) -> {
+      props.setProperty(module, String.join(",", route.repositories) + TIMESTAMP_SEPARATOR + route.learned.toEpochMilli());
+    });
+    GradleUtils.writeProperties(path, props);
+  }
+
+  public boolean record(String module, String repository) {
+    return record(module, repository, Instant.now());
+  }
+
+  // learn time isn't updated by later observations, so the entry expires even if the module is always served by the same repository
+  synchronized boolean record(String module, String repository, Instant now) {
+    return routes.computeIfAbsent(module, m -> new Route(now)).repositories.add(repository);
+  }
+
+  public synchronized void clear() {
+    routes.clear();
+  }
+
+  public synchronized boolean isEmpty() {
+    return routes.isEmpty();
+  }
+
+  public synchronized Map<String, Set<String>> getRoutes() {
+    Map<String, Set<String>> result = new TreeMap<>();
+    routes.forEach((module, route) -> result.put(module, Collections.unmodifiableSet(new TreeSet<>(route.repositories))));
+    return Collections.unmodifiableMap(result);
+  }
+
+  // `group:module` of modules that were never served by other repositories
+  public synchronized List<String> modulesServedOnlyBy(Collection<String> repositories) {
+    return routes.entrySet().stream()
+        .filter(e -> repositories.containsAll(e.getValue().repositories))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private static class Route {
+    final Set<String> repositories = new TreeSet<>();
+    final Instant learned;
+
+    Route(Instant learned) {
+      this.learned = learned;
+    }
+  }
+}
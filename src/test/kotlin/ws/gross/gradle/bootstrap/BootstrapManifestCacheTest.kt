@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.CsvSource
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneOffset
+
+class BootstrapManifestCacheTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private val now = Instant.parse("2023-06-01T00:00:00Z")
+
+  private fun cache(at: Instant = now, refresh: Boolean = false) = BootstrapManifestCache(
+    tempDir.resolve("cache"), Duration.ofMinutes(10), refresh, Clock.fixed(at, ZoneOffset.UTC)
+  )
+
+  private fun manifest(version: String = "1.2"): Path = tempDir.resolve("manifest-$version.properties").also {
+    it.toFile().writeText("""
+      description=some description
+      version=$version
+      pluginIds=some.plugin
+      catalogIds=catAlias=some.group:module
+    """.trimIndent())
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+    "1.2,            true ",
+    "1.2.3-rc.1,     true ",
+    "1.2-SNAPSHOT,   false",
+    "1.+,            false",
+    "latest.release, false",
+    "'[1.0,2.0)',    false",
+  )
+  fun `static versions detected`(version: String, static: Boolean) {
+    assertThat(BootstrapManifestCache.isStatic(version)).isEqualTo(static)
+  }
+
+  @Test
+  fun `miss when empty`() {
+    assertThat(cache().lookup("some.group", "manifest", "1.2")).isEmpty()
+  }
+
+  @Test
+  fun `static version never expires`() {
+    cache().store("some.group", "manifest", "1.2", manifest())
+
+    assertThat(cache(now.plus(Duration.ofDays(365))).lookup("some.group", "manifest", "1.2").orElse(null))
+      .isNotNull()
+      .prop("pluginIds") { it.pluginIds }.containsExactly("some.plugin")
+  }
+
+  @Test
+  fun `dynamic version expires after ttl`() {
+    cache().store("some.group", "manifest", "1.+", manifest())
+
+    assertThat(cache(now.plus(Duration.ofMinutes(5))).lookup("some.group", "manifest", "1.+")).isPresent()
+    assertThat(cache(now.plus(Duration.ofMinutes(15))).lookup("some.group", "manifest", "1.+")).isEmpty()
+  }
+
+  @Test
+  fun `refresh bypasses lookup`() {
+    cache().store("some.group", "manifest", "1.2", manifest())
+
+    assertThat(cache(refresh = true).lookup("some.group", "manifest", "1.2")).isEmpty()
+  }
+
+  @Test
+  fun `changed artifact replaces entry`() {
+    cache().store("some.group", "manifest", "1.2-SNAPSHOT", manifest("1.2"))
+    cache().store("some.group", "manifest", "1.2-SNAPSHOT", manifest("1.3"))
+
+    assertThat(cache().lookup("some.group", "manifest", "1.2-SNAPSHOT").orElse(null))
+      .isNotNull()
+      .prop("version") { it.version }.isEqualTo("1.3")
+  }
+
+  @Test
+  fun `rich version constraints keyed separately`() {
+    val plain = BootstrapManifestCache.versionKey(DefaultMutableVersionConstraint("1.2").asImmutable())
+    val strict = BootstrapManifestCache.versionKey(DefaultMutableVersionConstraint("1.2").apply { strictly("1.2") }.asImmutable())
+    val rejecting = BootstrapManifestCache.versionKey(DefaultMutableVersionConstraint("1.2").apply { reject("1.1") }.asImmutable())
+
+    assertThat(plain).isEqualTo("1.2")
+    assertThat(setOf(plain, strict, rejecting)).hasSize(3)
+    assertThat(BootstrapManifestCache.isStatic(strict)).isFalse()
+
+    cache().store("some.group", "manifest", strict, manifest())
+    assertThat(cache().lookup("some.group", "manifest", plain)).isEmpty()
+    assertThat(cache().lookup("some.group", "manifest", strict)).isPresent()
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap
+
+import assertk.all
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import java.util.Properties
+
+class BootstrapManifestTest {
+  @Test
+  fun `manifest parsed from properties`() {
+    val props = Properties().apply {
+      setProperty("description", "some description")
+      setProperty("version", "1.2")
+      setProperty("pluginIds", "some.plugin, other.plugin")
+      setProperty("pluginModules", "other.plugin=other.group:other-plugin")
+      setProperty("catalogIds", "catAlias=some.group:module")
+    }
+
+    assertThat(BootstrapManifest.of(props)).all {
+      prop("description") { it.description }.isEqualTo("some description")
+      prop("version") { it.version }.isEqualTo("1.2")
+      prop("pluginIds") { it.pluginIds }.containsExactly("some.plugin", "other.plugin")
+      prop("pluginModules") { it.pluginModules }.isEqualTo(mapOf("other.plugin" to "other.group:other-plugin"))
+      prop("catalogIds") { it.catalogIds }.isEqualTo(mapOf("catAlias" to "some.group:module"))
+    }
+  }
+
+  @Test
+  fun `missing fields are empty`() {
+    assertThat(BootstrapManifest.of(Properties())).all {
+      prop("description") { it.description }.isEmpty()
+      prop("version") { it.version }.isNull()
+      prop("pluginIds") { it.pluginIds }.isEmpty()
+      prop("pluginModules") { it.pluginModules }.isEmpty()
+      prop("catalogIds") { it.catalogIds }.isEmpty()
+    }
+  }
+
+  @Test
+  fun `inline catalogs survive round trip`() {
+    val props = Properties().apply {
+      setProperty("version", "1.2")
+      setProperty("catalogIds", "catAlias=some.group:module")
+      setProperty("catalogContent.catAlias", "[libraries]\nguava = \"com.google.guava:guava:31.0.1-jre\"\n")
+    }
+
+    assertThat(BootstrapManifest.of(BootstrapManifest.of(props).toProperties()))
+      .prop("catalogContents") { it.catalogContents }
+      .isEqualTo(mapOf("catAlias" to "[libraries]\nguava = \"com.google.guava:guava:31.0.1-jre\"\n"))
+  }
+
+  @Test
+  fun `digest changes with content only`() {
+    fun manifest(plugins: String) = BootstrapManifest.of(Properties().apply {
+      setProperty("version", "1.2-SNAPSHOT")
+      setProperty("pluginIds", plugins)
+    })
+
+    assertThat(manifest("some.plugin").digest()).isEqualTo(manifest("some.plugin").digest())
+    assertThat(manifest("some.plugin").digest()).isNotEqualTo(manifest("some.plugin,other.plugin").digest())
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+
+class LastKnownGoodManifestsTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private val manifest = BootstrapManifest(
+    "some description",
+    "1.2",
+    listOf("some.plugin"),
+    emptyMap(),
+    mapOf("libs" to "some.group:catalog", "tools" to "some.group:tools"),
+    mapOf("tools" to "[versions]\n"),
+  )
+
+  @Test
+  fun `miss when empty`() {
+    assertThat(LastKnownGoodManifests(tempDir).lookup("some.group", "manifest")).isEmpty()
+  }
+
+  @Test
+  fun `catalogs stored inline`() {
+    val lkg = LastKnownGoodManifests(tempDir)
+    lkg.store("some.group", "manifest", "1.+", manifest, mapOf("libs" to "[libraries]\n"))
+
+    val entry = lkg.lookup("some.group", "manifest").orElse(null)
+    assertThat(entry).isNotNull().all {
+      prop("coordinates") { it.coordinates }.isEqualTo("some.group:manifest:1.+")
+      prop("complete") { it.isComplete }.isTrue()
+      prop("catalogContents") { it.manifest.catalogContents }.isEqualTo(mapOf(
+        "libs" to "[libraries]\n",
+        "tools" to "[versions]\n",
+      ))
+    }
+  }
+
+  @Test
+  fun `incomplete without catalog contents`() {
+    val lkg = LastKnownGoodManifests(tempDir)
+    lkg.store("some.group", "manifest", "1.2", manifest, emptyMap())
+
+    assertThat(lkg.lookup("some.group", "manifest").map { it.isComplete }.orElse(null)).isEqualTo(false)
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.bootstrap
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import ws.gross.gradle.utils.GradleUtils
+import java.nio.file.Path
+
+class ParsedManifestsTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private fun manifest(version: String) = BootstrapManifest("", version, listOf("some.plugin"), emptyMap(), emptyMap(), emptyMap())
+
+  @Test
+  fun `parsed once while file unchanged`() {
+    val path = tempDir.resolve("manifest.properties")
+    GradleUtils.writeProperties(path, manifest("1.0").toProperties())
+
+    val parsed = ParsedManifests(16)
+    val first = parsed.get("manifest", path, BootstrapManifest::read)
+    val second = parsed.get("manifest", path, BootstrapManifest::read)
+
+    assertThat(second).isSameAs(first)
+    assertThat(parsed.hits).isEqualTo(1)
+    assertThat(parsed.misses).isEqualTo(1)
+  }
+
+  @Test
+  fun `parsed again when file replaced`() {
+    val path = tempDir.resolve("manifest.properties")
+    GradleUtils.writeProperties(path, manifest("1.0").toProperties())
+
+    val parsed = ParsedManifests(16)
+    parsed.get("manifest", path, BootstrapManifest::read)
+    GradleUtils.writeProperties(path, manifest("1.10").toProperties())
+
+    assertThat(parsed.get("manifest", path, BootstrapManifest::read).version).isEqualTo("1.10")
+  }
+
+  @Test
+  fun `last known good lookup reuses parsed entry`() {
+    val parsed = ParsedManifests(16)
+    val lkg = LastKnownGoodManifests(tempDir)
+    lkg.setParsedManifests(parsed)
+    lkg.store("some.group", "manifest", "1.0", manifest("1.0"), emptyMap())
+
+    val first = lkg.lookup("some.group", "manifest").orElse(null)
+    assertThat(lkg.lookup("some.group", "manifest").orElse(null)).isNotNull().isSameAs(first)
+  }
+}
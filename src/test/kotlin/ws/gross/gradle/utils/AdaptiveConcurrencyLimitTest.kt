@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+
+class AdaptiveConcurrencyLimitTest {
+  private val ms = 1_000_000L
+
+  @Test
+  fun `limit grows additively`() {
+    val limit = AdaptiveConcurrencyLimit(2, 1, 4)
+    var now = 0L
+    repeat(2) { limit.release(now, now + 10 * ms, 0, false); now += 10 * ms }
+    assertThat(limit.limit).isEqualTo(2)
+    repeat(2) { limit.release(now, now + 10 * ms, 0, false); now += 10 * ms }
+    assertThat(limit.limit).isEqualTo(3)
+    repeat(100) { limit.release(now, now + 10 * ms, 0, false); now += 10 * ms }
+    assertThat(limit.limit).isEqualTo(4)
+  }
+
+  @Test
+  fun `burst of overloads halves limit once`() {
+    val limit = AdaptiveConcurrencyLimit(16, 1, 16)
+    limit.release(0, 100 * ms, 0, true)
+    // started before the decrease
+    limit.release(10 * ms, 110 * ms, 0, true)
+    limit.release(20 * ms, 120 * ms, 0, true)
+    assertThat(limit.limit).isEqualTo(8)
+    assertThat(limit.overloads).isEqualTo(3)
+
+    limit.release(200 * ms, 300 * ms, 0, true)
+    assertThat(limit.limit).isEqualTo(4)
+    assertThat(limit.lowestLimit).isEqualTo(4)
+  }
+
+  @Test
+  fun `latency spike decreases limit`() {
+    val limit = AdaptiveConcurrencyLimit(10, 1, 10)
+    var now = 0L
+    repeat(20) { limit.release(now, now + 10 * ms, 0, false); now += 10 * ms }
+    limit.release(now, now + 100 * ms, 0, false)
+    assertThat(limit.limit).isEqualTo(9)
+  }
+
+  @Test
+  fun `never below minimum`() {
+    val limit = AdaptiveConcurrencyLimit(2, 1, 4)
+    repeat(5) { limit.release(it * 100 * ms, it * 100 * ms + 1, 0, true) }
+    assertThat(limit.limit).isEqualTo(1)
+  }
+
+  @Test
+  fun `large uploads among small ones don't decrease limit`() {
+    val limit = AdaptiveConcurrencyLimit(10, 1, 10)
+    val jar = 8L * 1024 * 1024
+    var now = 0L
+    // jar with its pom and checksums, like a typical publication
+    repeat(10) {
+      limit.release(now, now + 500 * ms, jar, false)
+      repeat(4) { limit.release(now, now + 10 * ms, 100, false) }
+      limit.release(now, now + 10 * ms, 2000, false)
+      now += 500 * ms
+    }
+    assertThat(limit.limit).isEqualTo(10)
+
+    // still detected within the size class
+    limit.release(now, now + 2000 * ms, jar, false)
+    assertThat(limit.limit).isEqualTo(9)
+  }
+
+  @Test
+  fun `size classes`() {
+    assertThat(AdaptiveConcurrencyLimit.sizeClass(0)).isEqualTo(0)
+    assertThat(AdaptiveConcurrencyLimit.sizeClass(64L * 1024 - 1)).isEqualTo(0)
+    assertThat(AdaptiveConcurrencyLimit.sizeClass(64L * 1024)).isEqualTo(1)
+    assertThat(AdaptiveConcurrencyLimit.sizeClass(100L * 1024 * 1024)).isEqualTo(2)
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.time.Instant
+import kotlin.concurrent.thread
+
+class BuildMetricsTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private fun metrics(millis: Long, version: String) = BuildMetrics(
+    Instant.ofEpochMilli(1_700_000_000_000 + millis), millis, 1, 2, 1, 0, 1, false,
+    mapOf("platform" to "org.example:platform:$version"),
+  )
+
+  @Test
+  fun `round trip`() {
+    val m = BuildMetrics(Instant.ofEpochMilli(1_700_000_000_000), 120, 2, 5, 3, 1, 1, true,
+      mapOf("a" to "org.example:a:[1.0,2.0)", "b" to "org.example:b:1.2"))
+    val parsed = BuildMetrics.parse(m.toLine()).get()
+    assertThat(parsed.toLine()).isEqualTo(m.toLine())
+    assertThat(parsed.manifestVersions).isEqualTo(m.manifestVersions)
+    assertThat(BuildMetrics.parse("garbage").isPresent).isFalse()
+  }
+
+  @Test
+  fun `rolling store keeps last records`() {
+    val path = tempDir.resolve("metrics/build.tsv")
+    (1L..5L).forEach { BuildMetrics.append(path, metrics(it, "1.0"), 3) }
+    assertThat(BuildMetrics.read(path).map { it.bootstrapMillis }).containsExactly(3L, 4L, 5L)
+  }
+
+  @Test
+  fun `concurrent appends keep all records`() {
+    val path = tempDir.resolve("metrics/build.tsv")
+    (1L..8L).map { t -> thread { (1L..10L).forEach { BuildMetrics.append(path, metrics(t * 100 + it, "1.0"), 500) } } }
+      .forEach { it.join() }
+    assertThat(BuildMetrics.read(path)).hasSize(80)
+  }
+
+  @Test
+  fun `write failure doesn't fail build`() {
+    val blocker = tempDir.resolve("metrics").toFile().apply { writeText("not a directory") }
+    val path = blocker.toPath().resolve("build.tsv")
+    BuildMetrics.append(path, metrics(1, "1.0"), 500)
+    assertThat(BuildMetrics.read(path)).isEmpty()
+  }
+
+  @Test
+  fun percentiles() {
+    val records = (1L..20L).map { metrics(it * 10, "1.0") }
+    assertThat(BuildMetricsReport.percentile(records, 50)).isEqualTo(100L)
+    assertThat(BuildMetricsReport.percentile(records, 95)).isEqualTo(190L)
+    assertThat(BuildMetricsReport.percentile(emptyList(), 95)).isEqualTo(0L)
+  }
+
+  @Test
+  fun `regression after manifest change`() {
+    val records = List(10) { metrics(200L + it, "1.0") } + List(5) { metrics(600L + it, "1.1") }
+    val regressions = BuildMetricsReport(records, 20).regressions()
+    assertThat(regressions).hasSize(1)
+    assertThat(regressions[0]).contains("platform=org.example:platform:1.1")
+  }
+
+  @Test
+  fun `no regression without manifest change`() {
+    val records = List(10) { metrics(200L + it, "1.0") } + List(5) { metrics(600L + it, "1.0") }
+    assertThat(BuildMetricsReport(records, 20).regressions()).isEmpty()
+  }
+}
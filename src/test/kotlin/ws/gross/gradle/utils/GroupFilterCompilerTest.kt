@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+
+class GroupFilterCompilerTest {
+  @Test
+  fun `empty filter`() {
+    assertThat(GroupFilterCompiler.compile(emptyList(), emptyList()).isPresent).isFalse()
+  }
+
+  @Test
+  fun `groups factored by prefix`() {
+    val regex = GroupFilterCompiler.compile(listOf("com.example.b", "com.example.a", "com.example.b.c"), emptyList())
+    assertThat(regex.get()).isEqualTo("com\\.example\\.(?:a|b(?:\\.c)?)")
+  }
+
+  @Test
+  fun `prefix absorbs subgroups`() {
+    val regex = GroupFilterCompiler.compile(listOf("com.example.a.b", "com.example.*"), emptyList())
+    assertThat(regex.get()).isEqualTo("com\\.example(?:\\..*)?")
+  }
+
+  @Test
+  fun `single regex kept as is`() {
+    assertThat(GroupFilterCompiler.compile(emptyList(), listOf("com\\.example(\\..*)?")).get())
+      .isEqualTo("com\\.example(\\..*)?")
+  }
+
+  @Test
+  fun `same matches as separate filters`() {
+    val groups = (1..300).map { "com.example.team$it" } +
+      (1..50).map { "org.example.lib$it.core" } +
+      listOf("io.acme-tools", "io.acme.*", "net.example_internal", "com.example.team7.sub")
+    val regexes = listOf("ru\\.example(\\..*)?", "[a-z]+\\.corp")
+    val compiled = Regex(GroupFilterCompiler.compile(groups, regexes).get())
+
+    fun naive(group: String) = group in groups ||
+      groups.filter { it.endsWith(".*") }.any { group == it.dropLast(2) || group.startsWith(it.dropLast(1)) } ||
+      regexes.any { Regex(it).matches(group) }
+
+    val samples = groups.map { it.removeSuffix(".*") } + listOf(
+      "com.example", "com.example.team", "com.example.team1000", "com.example.team7.sub.x", "com.example.team12.sub",
+      "org.example.lib1", "org.example.lib1.core", "org.example.lib1.core.x", "io.acme", "io.acme.x.y", "io.acmex",
+      "io.acme-tools.x", "ru.example", "ru.example.x", "ru.examplex", "foo.corp", "foo.bar.corp", "comXexample.team1",
+      "net.example_internal", "org.apache.commons",
+    )
+    samples.forEach { assertThat(compiled.matches(it), name = it).isEqualTo(naive(it)) }
+  }
+
+  @Test
+  fun `compiled filter matches same groups as separate filters`() {
+    val groups = (1..300).map { "com.example.team$it" } +
+      listOf(
+        "com.example.*", "org.example.platform.*", "io.acme-tools", "net.example_internal",
+        "org.weird+plus", "org.weird+plus.*", "org.dollar\$sign", "org.paren(s)", "org.star*x", "org.q?",
+        "org.brace{1}", "org.pipe|or", "org.caret^", "org.back\\slash", "org.brackets[a-z]",
+      )
+    val regexes = listOf("ru\\.example(\\..*)?", "[a-z]+\\.corp", "org\\.legacy\\..*")
+
+    val samples = groups.flatMap { g -> g.removeSuffix(".*").let { listOf(it, "$it.sub", "${it}x", it.dropLast(1)) } } + listOf(
+      "com.example", "comXexample.team1", "org.example.platform", "org.example.platformx", "org.weirdplus",
+      "org.weirddplus", "org.dollarsign", "org.parens", "org.starx", "org.starrrx", "org.q", "org.brace1", "org.braceee",
+      "org.pipe", "or", "org.caret", "org.backslash", "org.brackets[a-z]", "org.bracketsa", "ru.example", "ru.example.x",
+      "ru.examplex", "foo.corp", "foo.bar.corp", "org.legacy.a", "org.legacy", "org.apache.commons",
+    )
+
+    val separate = Filters().apply { GroupFilterCompiler.addFilters(groups, regexes, Int.MAX_VALUE, ::group, ::regex) }
+    val compiled = Filters().apply { GroupFilterCompiler.addFilters(groups, regexes, 0, ::group, ::regex) }
+
+    assertThat(separate.groups).isNotEmpty()
+    assertThat(compiled.groups).isEmpty()
+    assertThat(compiled.regexes).hasSize(1)
+    samples.forEach { assertThat(compiled.matches(it), name = it).isEqualTo(separate.matches(it)) }
+  }
+
+  // matches the same way as Gradle repository content filters
+  private class Filters {
+    val groups = mutableListOf<String>()
+    val regexes = mutableListOf<java.util.regex.Pattern>()
+
+    fun group(group: String) {
+      groups += group
+    }
+
+    fun regex(regex: String) {
+      regexes += java.util.regex.Pattern.compile(regex)
+    }
+
+    fun matches(group: String) = group in groups || regexes.any { it.matcher(group).matches() }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+
+class GroupIndexTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  @Test
+  fun `parse skips comments and blank lines`() {
+    val content = "# internal groups\r\ncom.example\n\n  org.example.tools  # tools\ncom.example\n"
+    assertThat(GroupIndex.parse(content)).containsExactly("com.example", "org.example.tools")
+  }
+
+  @Test
+  fun `round trip`() {
+    val path = tempDir.resolve("index.properties")
+    val timestamp = Instant.parse("2023-06-01T00:00:00Z")
+    GroupIndex(listOf("com.example", "org.example"), timestamp).write(path, "https://nexus.example.com/index.txt")
+
+    val index = GroupIndex.read(path, "https://nexus.example.com/index.txt")
+    assertThat(index.isPresent).isTrue()
+    assertThat(index.get().groups).containsExactly("com.example", "org.example")
+    assertThat(index.get().timestamp).isEqualTo(timestamp)
+    assertThat(index.get().isFresh(Duration.ofMinutes(10), timestamp.plusSeconds(599))).isTrue()
+    assertThat(index.get().isFresh(Duration.ofMinutes(10), timestamp.plusSeconds(600))).isFalse()
+  }
+
+  @Test
+  fun `other url ignored`() {
+    val path = tempDir.resolve("index.properties")
+    GroupIndex(listOf("com.example"), Instant.now()).write(path, "https://nexus.example.com/index.txt")
+
+    assertThat(GroupIndex.read(path, "https://nexus.example.com/other.txt").isPresent).isFalse()
+    assertThat(GroupIndex.read(tempDir.resolve("missing.properties"), "x").isPresent).isFalse()
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import ws.gross.gradle.utils.HttpRequestLog.Outcome
+
+class HttpRequestLogTest {
+  @Test
+  fun `group of maven path`() {
+    assertThat(HttpRequestLog.groupOf("org/example/lib/1.0/lib-1.0.pom")).isEqualTo("org.example")
+    assertThat(HttpRequestLog.groupOf("org/example/lib/maven-metadata.xml")).isEqualTo("org.example")
+    assertThat(HttpRequestLog.groupOf("org/example/lib/1.0-SNAPSHOT/maven-metadata.xml")).isEqualTo("org.example")
+    assertThat(HttpRequestLog.groupOf("lib.pom")).isEqualTo("")
+  }
+
+  @Test
+  fun `repository by longest url`() {
+    val log = HttpRequestLog().apply {
+      addRepository("nexus", "https://nexus.example.org/repository/public")
+      addRepository("nexusHosted", "https://nexus.example.org/repository/public-hosted/")
+    }
+    assertThat(log.repositoryOf("https://nexus.example.org/repository/public-hosted/a/b/1/b-1.pom"))
+      .isEqualTo(java.util.Optional.of("nexusHosted"))
+    assertThat(log.repositoryOf("https://repo.maven.apache.org/maven2/a/b/1/b-1.pom").isPresent).isFalse()
+  }
+
+  @Test
+  fun `missing groups summary`() {
+    val log = HttpRequestLog().apply {
+      addRepository("MavenRepo", "https://repo.maven.apache.org/maven2/")
+      addRepository("nexus", "https://nexus.example.org/repository/public/")
+      record("https://repo.maven.apache.org/maven2/org/example/lib/1.0/lib-1.0.pom", Outcome.MISSING, 0, 120)
+      record("https://nexus.example.org/repository/public/org/example/lib/1.0/lib-1.0.pom", Outcome.OK, 512, 30)
+      record("https://repo.maven.apache.org/maven2/org/slf4j/slf4j-api/2.0.9/slf4j-api-2.0.9.pom", Outcome.OK, 2048, 40)
+    }
+
+    assertThat(log.summary()).containsExactly(
+      "MavenRepo: 2 requests (0 metadata), 1 missing, 0 failed, 2.0 KiB, 160 ms",
+      "nexus: 1 requests (0 metadata), 0 missing, 0 failed, 0.5 KiB, 30 ms",
+      "org.example: 1 missing in MavenRepo, served by nexus",
+    )
+  }
+
+  @Test
+  fun `metadata requests not counted as served or missing`() {
+    val log = HttpRequestLog().apply {
+      addRepository("MavenRepo", "https://repo.maven.apache.org/maven2/")
+      addRepository("nexus", "https://nexus.example.org/repository/public/")
+      record("https://repo.maven.apache.org/maven2/org/example/lib/1.0/lib-1.0.jar", Outcome.METADATA, 0, 20)
+      record("https://repo.maven.apache.org/maven2/org/example/lib/1.0/lib-1.0.pom", Outcome.MISSING, 0, 20)
+      record("https://nexus.example.org/repository/public/org/example/lib/1.0/lib-1.0.jar", Outcome.METADATA, 0, 10)
+    }
+
+    assertThat(log.summary()).containsExactly(
+      "MavenRepo: 2 requests (1 metadata), 1 missing, 0 failed, 0.0 KiB, 40 ms",
+      "nexus: 1 requests (1 metadata), 0 missing, 0 failed, 0.0 KiB, 10 ms",
+      "Metadata requests don't report missing resources, so they aren't counted as missing",
+      "org.example: 1 missing in MavenRepo",
+    )
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import java.time.Instant
+
+class MavenMetadataTest {
+  private val now = Instant.parse("2023-06-01T10:15:30Z")
+
+  @Test
+  fun `version appended to existing metadata`() {
+    val first = MavenMetadata.artifactMetadata(null, "org.example", "lib", "1.0.0", now)
+    val snapshot = MavenMetadata.artifactMetadata(first, "org.example", "lib", "1.1.0-SNAPSHOT", now)
+    val second = String(MavenMetadata.artifactMetadata(snapshot, "org.example", "lib", "1.1.0", now))
+
+    assertThat(second).all {
+      contains("<latest>1.1.0</latest>")
+      contains("<release>1.1.0</release>")
+      contains("<version>1.0.0</version>\n      <version>1.1.0-SNAPSHOT</version>\n      <version>1.1.0</version>")
+      contains("<lastUpdated>20230601101530</lastUpdated>")
+    }
+  }
+
+  @Test
+  fun `release kept for snapshot`() {
+    val release = MavenMetadata.artifactMetadata(null, "org.example", "lib", "1.0.0", now)
+    val snapshot = String(MavenMetadata.artifactMetadata(release, "org.example", "lib", "1.1.0-SNAPSHOT", now))
+
+    assertThat(snapshot).all {
+      contains("<latest>1.1.0-SNAPSHOT</latest>")
+      contains("<release>1.0.0</release>")
+    }
+  }
+
+  @Test
+  fun `snapshot build number incremented`() {
+    val timestamp = MavenMetadata.snapshotTimestamp(now)
+    assertThat(timestamp).isEqualTo("20230601.101530")
+    assertThat(MavenMetadata.lastBuildNumber(null)).isEqualTo(0)
+
+    val metadata = MavenMetadata.snapshotMetadata("org.example", "lib", "1.1.0-SNAPSHOT", timestamp, 3,
+      listOf(":jar", "sources:jar", ":pom"), now)
+
+    assertThat(MavenMetadata.lastBuildNumber(metadata)).isEqualTo(3)
+    assertThat(String(metadata)).all {
+      contains("<classifier>sources</classifier>")
+      contains("<value>1.1.0-20230601.101530-3</value>")
+    }
+    assertThat(MavenMetadata.timestampedVersion("1.1.0-SNAPSHOT", timestamp, 3)).isEqualTo("1.1.0-20230601.101530-3")
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+
+class MavenRepositoryUploaderTest {
+  @Test
+  fun `retry delay is jittered exponential`() {
+    repeat(20) {
+      assertThat(MavenRepositoryUploader.retryDelayMillis(1, 0)).isBetween(250, 500)
+      assertThat(MavenRepositoryUploader.retryDelayMillis(3, 0)).isBetween(1000, 2000)
+    }
+  }
+
+  @Test
+  fun `retry after respected`() {
+    assertThat(MavenRepositoryUploader.retryAfterMillis("5")).isEqualTo(5000L)
+    assertThat(MavenRepositoryUploader.retryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT")).isEqualTo(0L)
+    assertThat(MavenRepositoryUploader.retryAfterMillis("3600")).isEqualTo(60_000L)
+    assertThat(MavenRepositoryUploader.retryDelayMillis(1, 5000)).isEqualTo(5000L)
+  }
+}
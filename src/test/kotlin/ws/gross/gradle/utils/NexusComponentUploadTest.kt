@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.io.ByteArrayOutputStream
+import java.nio.file.Path
+
+class NexusComponentUploadTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  @Test
+  fun `coordinates taken from pom`() {
+    val pom = tempDir.resolve("lib.pom").also { it.toFile().writeText("<project/>") }
+    val jar = tempDir.resolve("lib-sources.jar").also { it.toFile().writeText("sources") }
+
+    val upload = NexusComponentUpload("org.example", "lib", "1.0.0", linkedMapOf(":pom" to pom, "sources:jar" to jar))
+
+    assertThat(upload.fields).isEqualTo(mapOf(
+      "maven2.asset1.extension" to "pom",
+      "maven2.asset2.classifier" to "sources",
+      "maven2.asset2.extension" to "jar",
+    ))
+  }
+
+  @Test
+  fun `multipart body written`() {
+    val jar = tempDir.resolve("lib.jar").also { it.toFile().writeText("jar content") }
+    val upload = NexusComponentUpload("org.example", "lib", "1.0.0", mapOf(":jar" to jar))
+
+    val body = ByteArrayOutputStream().also { upload.writeTo(it) }.toString(Charsets.UTF_8)
+    val boundary = upload.contentType.substringAfter("boundary=")
+
+    assertThat(body).all {
+      contains("name=\"maven2.groupId\"\r\n\r\norg.example\r\n")
+      contains("name=\"maven2.generate-pom\"\r\n\r\nfalse\r\n")
+      contains("name=\"maven2.asset1\"; filename=\"lib.jar\"")
+      contains("\r\n\r\njar content\r\n")
+      endsWith("--$boundary--\r\n")
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+import java.util.Optional
+
+class NexusMirrorsTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private val urls = listOf("https://nexus-eu.example.com", "https://nexus-us.example.com", "https://nexus-ap.example.com")
+
+  private fun result(url: String, reachable: Boolean, millis: Long, healthy: Boolean = reachable) =
+    RepositoryHealthProbe.Result(url, url, reachable, healthy, if (healthy || !reachable) "" else "HTTP 503", millis)
+
+  @Test
+  fun `fastest reachable mirror selected`() {
+    val results = listOf(
+      result(urls[0], true, 180),
+      result(urls[1], true, 25),
+      result(urls[2], false, 3),
+    )
+    assertThat(NexusMirrors.select(results, urls)).isEqualTo(urls[1])
+  }
+
+  @Test
+  fun `first mirror if none reachable`() {
+    assertThat(NexusMirrors.select(urls.map { result(it, false, 1) }, urls)).isEqualTo(urls[0])
+  }
+
+  @Test
+  fun `fast unhealthy mirror skipped`() {
+    val results = listOf(
+      result(urls[0], true, 180),
+      result(urls[1], true, 5, healthy = false),
+      result(urls[2], true, 90),
+    )
+    assertThat(NexusMirrors.select(results, urls)).isEqualTo(urls[2])
+  }
+
+  @Test
+  fun `first mirror if none healthy`() {
+    val results = listOf(
+      result(urls[0], true, 180, healthy = false),
+      result(urls[1], true, 5, healthy = false),
+      result(urls[2], false, 3),
+    )
+    assertThat(NexusMirrors.select(results, urls)).isEqualTo(urls[0])
+  }
+
+  @Test
+  fun `cached selection expires`() {
+    val path = tempDir.resolve("mirror.properties")
+    val now = Instant.parse("2023-06-01T10:00:00Z")
+    NexusMirrors.writeCached(path, urls, urls[2], now)
+
+    val ttl = Duration.ofHours(1)
+    assertThat(NexusMirrors.readCached(path, urls, ttl, now.plusSeconds(60), false)).isEqualTo(Optional.of(urls[2]))
+    assertThat(NexusMirrors.readCached(path, urls, ttl, now.plus(ttl), false).isPresent).isFalse()
+    assertThat(NexusMirrors.readCached(path, urls, ttl, now.plus(ttl), true)).isEqualTo(Optional.of(urls[2]))
+    assertThat(NexusMirrors.readCached(path, urls.take(2), ttl, now, false).isPresent).isFalse()
+  }
+}
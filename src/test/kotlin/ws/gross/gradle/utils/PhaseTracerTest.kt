@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.function.Supplier
+
+class PhaseTracerTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  @Test
+  fun `chrome trace written`() {
+    val tracer = PhaseTracer.create(true)
+    val result = tracer.trace("outer \"phase\"", Supplier {
+      tracer.trace("inner", Supplier { ByteArray(1024).size })
+    })
+    assertThat(result).isEqualTo(1024)
+
+    val path = tempDir.resolve("build/trace.json")
+    tracer.write(path)
+
+    val events = jacksonObjectMapper().readTree(path.toFile())["traceEvents"].toList()
+    assertThat(events.map { it["name"].asText() }).containsExactly("inner", "outer \"phase\"")
+    events.forEach { e: JsonNode ->
+      assertThat(e["ph"].asText()).isEqualTo("X")
+      assertThat(e["dur"].asDouble()).isGreaterThanOrEqualTo(0.0)
+    }
+    assertThat(events[1]["dur"].asDouble()).isGreaterThanOrEqualTo(events[0]["dur"].asDouble())
+  }
+
+  @Test
+  fun `disabled tracer writes nothing`() {
+    val tracer = PhaseTracer.create(false)
+    tracer.trace("phase", Runnable { })
+
+    val path = tempDir.resolve("trace.json")
+    tracer.write(path)
+    assertThat(Files.exists(path)).isFalse()
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+
+class PrefetchModulesTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  @Test
+  fun `lockfile parsed`() {
+    val lines = """
+      # This is a Gradle generated file for dependency locking.
+      # Manual edits can break the build and are not advised.
+      # This file is expected to be part of source control.
+      com.google.guava:guava:31.0.1-jre=compileClasspath,runtimeClasspath
+      org.slf4j:slf4j-api:2.0.9=runtimeClasspath
+      empty=annotationProcessor
+    """.trimIndent().lines()
+
+    assertThat(PrefetchModules.parseLockfile(lines))
+      .containsExactly("com.google.guava:guava:31.0.1-jre", "org.slf4j:slf4j-api:2.0.9")
+  }
+
+  @Test
+  fun `lockfiles of all projects read`() {
+    val sub = Files.createDirectories(tempDir.resolve("sub"))
+    tempDir.resolve("settings-gradle.lockfile").toFile().writeText("org.example:manifest:1.0=incomingBootstrapManifests\n")
+    sub.resolve("gradle.lockfile").toFile().writeText("org.example:lib:1.2=runtimeClasspath\nempty=\n")
+
+    assertThat(PrefetchModules.readLockfiles(listOf(tempDir, sub, tempDir.resolve("missing"))))
+      .containsExactly("org.example:lib:1.2", "org.example:manifest:1.0")
+  }
+
+  @Test
+  fun `resolved modules round trip`() {
+    val path = tempDir.resolve(".gradle/private-repo/resolved-modules.txt")
+    PrefetchModules.writeResolved(path, setOf("org.example:b:1.0", "org.example:a:2.0"))
+
+    assertThat(PrefetchModules.readResolved(path)).containsExactly("org.example:a:2.0", "org.example:b:1.0")
+  }
+
+  @Test
+  fun `tasks resolving dependencies detected`() {
+    assertThat(PrefetchModules.resolvesDependencies(listOf())).isFalse()
+    assertThat(PrefetchModules.resolvesDependencies(listOf("help", ":sub:tasks", "--all"))).isFalse()
+    assertThat(PrefetchModules.resolvesDependencies(listOf("clean", "build"))).isTrue()
+    assertThat(PrefetchModules.resolvesDependencies(listOf(":sub:compileJava"))).isTrue()
+  }
+}
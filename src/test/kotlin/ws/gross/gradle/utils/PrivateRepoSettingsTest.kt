@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.gradle.api.GradleException
+import org.junit.jupiter.api.*
+
+class PrivateRepoSettingsTest {
+  private val settings = PrivateRepoSettings(
+    "nexus",
+    mapOf("nexusRepo" to "releases", "nexusGroups" to "org.example, com.example", "nexusMirror" to "true"),
+    mapOf("NEXUS_REPO" to "ignored", "NEXUS_EXCLUSIVE" to "true", "NEXUS_GROUP_FILTER_THRESHOLD" to "x"),
+  )
+
+  @Test
+  fun `property wins over env var`() {
+    assertThat(settings.getString("repo", "public")).isEqualTo("releases")
+  }
+
+  @Test
+  fun `env var used if property absent`() {
+    assertThat(settings.getBoolean("exclusive", false)).isTrue()
+    assertThat(settings.getBoolean("mirror", false)).isTrue()
+    assertThat(settings.getBoolean("pluginRouting", false)).isFalse()
+  }
+
+  @Test
+  fun `typed values`() {
+    assertThat(settings.getList("groups", emptyList())).containsExactly("org.example", "com.example")
+    assertThat(settings.getList("groupRegexes").isPresent).isFalse()
+    assertThat(settings.getLong("bootstrapCacheTtl", 10)).isEqualTo(10L)
+  }
+
+  @Test
+  fun `invalid number`() {
+    assertThat { settings.getInt("groupFilterThreshold", 16) }.isFailure()
+      .isInstanceOf(GradleException::class)
+      .messageContains("nexusGroupFilterThreshold")
+  }
+}
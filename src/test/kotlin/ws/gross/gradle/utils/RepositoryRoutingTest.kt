@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Konstantin Gribov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ws.gross.gradle.utils
+
+import assertk.assertThat
+import assertk.assertions.*
+import org.junit.jupiter.api.*
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+
+class RepositoryRoutingTest {
+  @TempDir
+  lateinit var tempDir: Path
+
+  private val now = Instant.parse("2023-06-01T00:00:00Z")
+
+  private val ttl = Duration.ofDays(7)
+
+  @Test
+  fun `round trip`() {
+    val path = tempDir.resolve("routing.properties")
+    RepositoryRouting().apply {
+      assertThat(record("org.example:lib", "nexus", now)).isTrue()
+      assertThat(record("org.example:lib", "nexus", now)).isFalse()
+      record("org.example:lib", "nexusHosted", now)
+      record("org.apache.commons:commons-lang3", "MavenRepo", now)
+    }.write(path)
+
+    assertThat(RepositoryRouting.read(path, ttl, now).routes).isEqualTo(mapOf(
+      "org.apache.commons:commons-lang3" to setOf("MavenRepo"),
+      "org.example:lib" to setOf("nexus", "nexusHosted"),
+    ))
+  }
+
+  @Test
+  fun `modules served only by private repos`() {
+    val routing = RepositoryRouting().apply {
+      record("org.example:lib", "nexus", now)
+      record("org.example.lib:core", "nexusHosted", now)
+      record("org.example:mixed", "nexus", now)
+      record("org.example:mixed", "MavenRepo", now)
+      record("org.apache.commons:commons-lang3", "MavenRepo", now)
+    }
+
+    assertThat(routing.modulesServedOnlyBy(listOf("nexus", "nexusHosted")))
+      .containsExactly("org.example.lib:core", "org.example:lib")
+  }
+
+  @Test
+  fun `entries expire after ttl since learned`() {
+    val path = tempDir.resolve("routing.properties")
+    RepositoryRouting().apply {
+      record("org.example:old", "nexus", now)
+      record("org.example:new", "nexus", now.plus(Duration.ofDays(5)))
+      // later observations don't extend the entry
+      record("org.example:old", "nexus", now.plus(Duration.ofDays(5)))
+    }.write(path)
+
+    assertThat(RepositoryRouting.read(path, ttl, now.plus(Duration.ofDays(8))).routes.keys)
+      .containsExactly("org.example:new")
+  }
+
+  @Test
+  fun `group entries of older format ignored`() {
+    val path = tempDir.resolve("routing.properties")
+    path.toFile().writeText("org.example=nexus\n")
+
+    assertThat(RepositoryRouting.read(path, ttl, now).isEmpty).isTrue()
+  }
+
+  @Test
+  fun `missing file is empty`() {
+    assertThat(RepositoryRouting.read(tempDir.resolve("missing.properties"), ttl).isEmpty).isTrue()
+  }
+}